@@ -0,0 +1,46 @@
+package ee.taltech.iti0202.bookscraper.models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures genre name and genre url mapping over all genres
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookGenreBenchmark {
+
+    private final String[] names = {
+            "Fiction", "History", "Computers and the Internet", "Children's Literature",
+            "Society and Politics", "Reference books", "Health", "Not a genre"
+    };
+    private final BookGenre[] genres = BookGenre.values();
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(BookGenreParser.parse(name));
+        }
+    }
+
+    @Benchmark
+    public void getUrlByGenre(Blackhole blackhole) {
+        for (BookGenre genre : genres) {
+            blackhole.consume(BookGenreUrlParser.getUrlByGenre(genre));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import ee.taltech.iti0202.bookscraper.models.Author;
+import ee.taltech.iti0202.bookscraper.models.Book;
+import ee.taltech.iti0202.bookscraper.models.BookGenre;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures repository insert and lookup paths against an in-memory H2 database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorBookRepositoryBenchmark {
+
+    private static final int BOOKS = 1000;
+    private static final int PAGE_SIZE = 60;
+
+    @Param({"0", "10000"})
+    public int bookCacheSize;
+
+    private AuthorBookRepository repository;
+    private int authorId;
+    private int lookup;
+    private int inserted;
+
+    /**
+     * Author without books, created before every call of addBookToAuthor,
+     * so every call adds to an equally small book collection
+     */
+    @State(Scope.Benchmark)
+    public static class NewAuthor {
+        private int authorId;
+
+        @Setup(Level.Invocation)
+        public void setUp(AuthorBookRepositoryBenchmark benchmark) {
+            Author author = Author.builder()
+                    .withFirstName("Eiichiro")
+                    .withLastName("Oda")
+                    .withBooks(new ArrayList<>())
+                    .build();
+            benchmark.repository.addAuthor(author);
+            authorId = author.getId();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = H2Properties.inMemory("benchmark");
+        properties.setProperty(AuthorBookRepository.BOOK_CACHE_SIZE_PROPERTY, String.valueOf(bookCacheSize));
+        repository = new AuthorBookRepository(properties);
+        Author author = Author.builder()
+                .withFirstName("Kohei")
+                .withLastName("Horikoshi")
+                .withBooks(new ArrayList<>())
+                .build();
+        repository.addAuthor(author);
+        authorId = author.getId();
+
+        for (int i = 0; i < BOOKS; i++) {
+            repository.addBookToAuthor(authorId, book("https://www.apollo.ee/en/book-" + i + ".html"));
+        }
+    }
+
+    private Book book(String url) {
+        return Book.builder()
+                .withTitle("My Hero Academia")
+                .withUrl(url)
+                .withGenre("Fiction")
+                .withPrice(11.49)
+                .withPages(192)
+                .build();
+    }
+
+    @Benchmark
+    public Optional<Book> getBookByUrl() {
+        lookup = (lookup + 1) % BOOKS;
+        return repository.getBookByUrl("https://www.apollo.ee/en/book-" + lookup + ".html");
+    }
+
+    @Benchmark
+    public Optional<Author> getAuthorByNameAndSurname() {
+        return repository.getAuthorByNameAndSurname("Kohei", "Horikoshi");
+    }
+
+    @Benchmark
+    public void addBookToAuthor(NewAuthor newAuthor) {
+        repository.addBookToAuthor(newAuthor.authorId, book("https://www.apollo.ee/en/new-book-" + inserted++ + ".html"));
+    }
+
+    @Benchmark
+    public void saveAllPage() {
+        List<Book> page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Book book = book("https://www.apollo.ee/en/page-book-" + inserted++ + ".html");
+            book.setAuthor(Author.builder().withFirstName("Kohei").withLastName("Horikoshi").build());
+            page.add(book);
+        }
+        repository.saveAll(page);
+    }
+
+    @Benchmark
+    public List<Book> getBooksByGenre() {
+        return repository.getBooksByGenre(BookGenre.FICTION);
+    }
+}
@@ -0,0 +1,59 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.models.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares product page extraction modes on saved product pages
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookPageExtractorBenchmark {
+
+    private static final String URL = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+
+    @Param({"DOM", "SINGLE_PASS", "STREAMING"})
+    private ExtractionMode mode;
+
+    @Param({"product.html", "product-ruination.html"})
+    private String page;
+
+    private String html;
+    private BookPageExtractor extractor;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/pages/" + page)) {
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        extractor = switch (mode) {
+            case DOM -> new DomBookPageExtractor();
+            case SINGLE_PASS -> new SinglePassBookPageExtractor();
+            case STREAMING -> new StreamingBookPageExtractor();
+        };
+    }
+
+    @Benchmark
+    public Book extractBook() {
+        return extractor.extract(html, URL);
+    }
+}
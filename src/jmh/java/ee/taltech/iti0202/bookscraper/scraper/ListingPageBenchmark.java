@@ -0,0 +1,58 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.fetcher.FetchException;
+import ee.taltech.iti0202.bookscraper.fetcher.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures extraction of product urls from a listing page with 60 books, as used by getSingleBookPage
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingPageBenchmark {
+
+    private static final String LISTING_URL =
+            "https://www.apollo.ee/en/raamatud/ingliskeelsed-raamatud/ilukirjandus?page=1";
+    private static final int BOOKS_ON_PAGE = 60;
+
+    private Scraper scraper;
+
+    @Setup
+    public void setUp() {
+        StringBuilder html = new StringBuilder("<html><body><main>"
+                + "<div class=\"product-list styles_product-list__vruLH\">");
+        for (int i = 0; i < BOOKS_ON_PAGE; i++) {
+            html.append("<div class=\"styles_product-list__item__rjWBQ\">")
+                    .append("<a href=\"/en/book-").append(i).append(".html\">")
+                    .append("<span class=\"styles_product-card__title\">Book ").append(i).append("</span></a>")
+                    .append("<span class=\"styles_product-price-value__Ai9c8\">").append(i).append(",99 €</span>")
+                    .append("</div>");
+        }
+        html.append("</div></main></body></html>");
+
+        Page page = new Page(LISTING_URL, 200, html.toString(), Map.of());
+        scraper = new Scraper(null, (url, headers) -> page);
+    }
+
+    @Benchmark
+    public List<String> extractBookUrls() throws FetchException {
+        return scraper.getBookUrlsFromListingPage(LISTING_URL);
+    }
+}
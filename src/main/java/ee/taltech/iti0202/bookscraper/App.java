@@ -1,28 +1,63 @@
 package ee.taltech.iti0202.bookscraper;
 
+import ee.taltech.iti0202.bookscraper.fetcher.CachingPageFetcher;
+import ee.taltech.iti0202.bookscraper.fetcher.FetchException;
+import ee.taltech.iti0202.bookscraper.fetcher.HttpClientPageFetcher;
+import ee.taltech.iti0202.bookscraper.fetcher.PageFetcher;
+import ee.taltech.iti0202.bookscraper.fetcher.RateLimitedPageFetcher;
+import ee.taltech.iti0202.bookscraper.fetcher.RecordingPageFetcher;
+import ee.taltech.iti0202.bookscraper.fetcher.ReplayPageFetcher;
+import ee.taltech.iti0202.bookscraper.frontier.CrawlCheckpoint;
+import ee.taltech.iti0202.bookscraper.frontier.UrlFrontier;
 import ee.taltech.iti0202.bookscraper.models.Book;
 import ee.taltech.iti0202.bookscraper.models.Author;
 import ee.taltech.iti0202.bookscraper.models.BookGenre;
 import ee.taltech.iti0202.bookscraper.models.BookGenreParser;
 import ee.taltech.iti0202.bookscraper.models.BookGenreUrlParser;
+import ee.taltech.iti0202.bookscraper.models.BookSummary;
 import ee.taltech.iti0202.bookscraper.repository.AuthorBookRepository;
+import ee.taltech.iti0202.bookscraper.scraper.CrawlScheduler;
+import ee.taltech.iti0202.bookscraper.scraper.GenreCrawlReport;
 import ee.taltech.iti0202.bookscraper.scraper.ProcessingType;
 import ee.taltech.iti0202.bookscraper.scraper.Scraper;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 public class App {
 
+    private static final Path PAGE_CACHE_DIRECTORY = Path.of("cache", "pages");
+    private static final Duration BOOK_REFRESH_TTL = Duration.ofDays(1);
+    private static final Path FRONTIER_FILE = Path.of("cache", "frontier.bloom");
+    private static final Path CHECKPOINT_FILE = Path.of("cache", "crawl.checkpoint");
+    private static final String SITEMAP_URL = "https://www.apollo.ee/sitemap.xml";
+
     private final Scraper scraper;
+    private final CrawlCheckpoint checkpoint;
 
     /**
      * Constructor
      * @param scraper scraper
      */
     public App(Scraper scraper) {
+        this(scraper, null);
+    }
+
+    /**
+     * Constructor
+     * @param scraper scraper
+     * @param checkpoint checkpoint used by the scraper's crawls, cleared after a crawl is complete
+     */
+    public App(Scraper scraper, CrawlCheckpoint checkpoint) {
         this.scraper = scraper;
+        this.checkpoint = checkpoint;
     }
 
     /**
@@ -44,13 +79,16 @@ public class App {
      * @param bookGenre genre
      */
     public void showBooksByGenreLocal(BookGenre bookGenre) {
-        List<Book> books = scraper.getBooksByGenre(bookGenre);
-        if (!books.isEmpty()) {
-            for (Book book : books) {
-                book.presentBook();
+        int shown = 0;
+        try (Stream<BookSummary> books = scraper.streamBookSummariesByGenre(bookGenre)) {
+            for (BookSummary book : (Iterable<BookSummary>) books::iterator) {
+                book.present();
                 System.out.print("\n");
+                shown++;
             }
-            System.out.printf("%d books were shown from database\n\n", books.size());
+        }
+        if (shown > 0) {
+            System.out.printf("%d books were shown from database\n\n", shown);
         } else {
             System.out.printf("No books of genre %s are found in database", bookGenre);
         }
@@ -62,7 +100,7 @@ public class App {
      */
     public void showBooksByGenre(BookGenre genre) {
         List<Book> books = scraper.getSingleBookPage(
-                BookGenreUrlParser.getUrlByGenre(genre), 0, 0, ProcessingType.PARALLEL
+                BookGenreUrlParser.getUrlByGenre(genre), 0, 0, ProcessingType.VIRTUAL_THREADS
         );
         if (books != null) {
             books.forEach(Book::presentBook);
@@ -78,7 +116,7 @@ public class App {
      */
     public void showBooksByGenre(BookGenre genre, int page, int size) {
         List<Book> books = scraper.getSingleBookPage(
-                BookGenreUrlParser.getUrlByGenre(genre), page, size, ProcessingType.PARALLEL
+                BookGenreUrlParser.getUrlByGenre(genre), page, size, ProcessingType.VIRTUAL_THREADS
         );
         if (books != null) {
             books.forEach(Book::presentBook);
@@ -86,6 +124,58 @@ public class App {
         }
     }
 
+    /**
+     * Crawl all pages of a genre from the web
+     * @param genre genre
+     */
+    public void crawlGenre(BookGenre genre) {
+        int pages;
+        try {
+            pages = scraper.crawlGenre(genre, ProcessingType.VIRTUAL_THREADS, books -> {
+                books.forEach(Book::presentBook);
+                System.out.printf("%d books were shown\n\n", books.size());
+            });
+        } catch (FetchException | RuntimeException e) {
+            System.out.printf("Crawl of %s stopped, the next crawl resumes from there: %s\n\n", genre, e.getMessage());
+            return;
+        }
+        System.out.printf("%d pages of %s were crawled\n\n", pages, genre);
+        clearCheckpoint(genre);
+    }
+
+    /**
+     * Crawl all genres from the web at once, sharing the concurrency budget between them
+     */
+    public void crawlAllGenres() {
+        CrawlScheduler scheduler = new CrawlScheduler(scraper, Scraper.DEFAULT_MAX_CONCURRENCY);
+        Map<BookGenre, GenreCrawlReport> reports = scheduler.crawlAll(
+                report -> System.out.printf("Genre done: %s\n", report)
+        );
+        System.out.printf("%d genres were crawled\n\n", reports.size());
+        reports.values().stream()
+                .filter(GenreCrawlReport::complete)
+                .forEach(report -> clearCheckpoint(report.genre()));
+    }
+
+    /**
+     * Forget progress of a genre whose crawl reached the end of its listing,
+     * so its next crawl starts from the beginning. Progress of other genres is kept
+     * @param genre crawled genre
+     */
+    private void clearCheckpoint(BookGenre genre) {
+        if (checkpoint != null) {
+            checkpoint.clear(genre.name());
+        }
+    }
+
+    /**
+     * Load new and changed books listed in the sitemap
+     */
+    public void crawlSitemap() {
+        int loaded = scraper.crawlSitemap(SITEMAP_URL, book -> System.out.printf("Loaded: %s\n", book));
+        System.out.printf("%d new or changed books were loaded\n\n", loaded);
+    }
+
     /**
      * Show all books of provided author
      * @param author author
@@ -103,15 +193,74 @@ public class App {
      * Show all books from database
      */
     public void showAllBooks() {
-        List<Book> books = scraper.getAllBooks();
+        boolean empty = true;
+        try (Stream<BookSummary> books = scraper.streamBookSummaries()) {
+            for (BookSummary book : (Iterable<BookSummary>) books::iterator) {
+                book.present();
+                System.out.print("\n");
+                empty = false;
+            }
+        }
 
-        if (books.isEmpty()) {
+        if (empty) {
             System.out.println("No books in database yet");
-        } else {
-            for (Book book : books) {
-                book.presentBook();
-                System.out.print("\n");
+        }
+    }
+
+    /**
+     * Create page fetcher from command line arguments.
+     * '--record=DIR' saves every fetched page into DIR, '--replay=DIR' serves pages from DIR without network
+     * @param args command line arguments
+     * @return page fetcher
+     */
+    public static PageFetcher createFetcher(String[] args) {
+        PageFetcher fetcher = new CachingPageFetcher(
+                new RateLimitedPageFetcher(new HttpClientPageFetcher()), PAGE_CACHE_DIRECTORY
+        );
+        for (String arg : args) {
+            if (arg.startsWith("--replay=")) {
+                return new ReplayPageFetcher(Path.of(arg.substring("--replay=".length())));
+            }
+            if (arg.startsWith("--record=")) {
+                fetcher = new RecordingPageFetcher(fetcher, Path.of(arg.substring("--record=".length())));
+            }
+        }
+        return fetcher;
+    }
+
+    /**
+     * Open the frontier of stored book urls. A new frontier is filled with urls already in database
+     * @param repository repository
+     * @return frontier or null if it can't be opened
+     */
+    private static UrlFrontier openFrontier(AuthorBookRepository repository) {
+        try {
+            Files.createDirectories(FRONTIER_FILE.getParent());
+            UrlFrontier frontier = UrlFrontier.open(FRONTIER_FILE);
+            if (!frontier.isSeeded()) {
+                try (Stream<String> urls = repository.streamAllBookUrls()) {
+                    urls.forEach(frontier::add);
+                }
+                frontier.markSeeded();
             }
+            return frontier;
+        } catch (IOException e) {
+            System.out.printf("Can't open url frontier %s: %s\n", FRONTIER_FILE, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Open the checkpoint log of interrupted crawls
+     * @return checkpoint or null if it can't be opened
+     */
+    private static CrawlCheckpoint openCheckpoint() {
+        try {
+            Files.createDirectories(CHECKPOINT_FILE.getParent());
+            return CrawlCheckpoint.open(CHECKPOINT_FILE);
+        } catch (IOException e) {
+            System.out.printf("Can't open crawl checkpoint %s: %s\n", CHECKPOINT_FILE, e.getMessage());
+            return null;
         }
     }
 
@@ -119,9 +268,22 @@ public class App {
      * Main entry point
      */
     public static void mainEntry() {
+        mainEntry(createFetcher(new String[0]));
+    }
+
+    /**
+     * Main entry point
+     * @param fetcher fetcher used to download pages
+     */
+    public static void mainEntry(PageFetcher fetcher) {
         AuthorBookRepository repository = new AuthorBookRepository();
-        Scraper scraper = new Scraper(repository);
-        App app = new App(scraper);
+        Scraper scraper = new Scraper(repository, fetcher);
+        scraper.setRefreshTtl(BOOK_REFRESH_TTL);
+        System.out.printf("Cached %d authors\n", scraper.warmUpAuthorCache());
+        scraper.setFrontier(openFrontier(repository));
+        CrawlCheckpoint checkpoint = openCheckpoint();
+        scraper.setCheckpoint(checkpoint);
+        App app = new App(scraper, checkpoint);
 
         Scanner sc = new Scanner(System.in);
 
@@ -135,6 +297,9 @@ public class App {
             System.out.println("4 - Show books of an author");
             System.out.println("5 - Show all the books");
             System.out.println("6 - Show books page with exact amount");
+            System.out.println("7 - Crawl all pages of a genre from web");
+            System.out.println("8 - Crawl all genres from web");
+            System.out.println("9 - Load new and changed books from sitemap");
             System.out.print("\n");
 
             int choice = -1;
@@ -210,13 +375,27 @@ public class App {
                         System.out.println("Wrong input!");
                         break;
                     }
+                case 7:
+                    System.out.println("Please provide a genre:");
+                    BookGenre genre4 = BookGenreParser.parse(sc.nextLine());
+                    System.out.print("\n");
+                    app.crawlGenre(genre4);
+                    break;
+                case 8:
+                    app.crawlAllGenres();
+                    break;
+                case 9:
+                    app.crawlSitemap();
+                    break;
                 default:
                     System.out.println("No such option");
             }
         }
+        System.out.println(repository.getBookCache());
+        repository.getConnectionPoolMetrics().ifPresent(System.out::println);
     }
 
     public static void main(String[] args) {
-        mainEntry();
+        mainEntry(createFetcher(args));
     }
 }
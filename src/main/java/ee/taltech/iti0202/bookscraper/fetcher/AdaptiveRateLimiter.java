@@ -0,0 +1,127 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket whose refill rate adapts with AIMD:
+ * the rate grows additively while responses are fast and is cut multiplicatively on throttling
+ */
+public class AdaptiveRateLimiter {
+
+    public static final double DEFAULT_INITIAL_RATE = 4;
+    public static final double DEFAULT_MIN_RATE = 0.5;
+    public static final double DEFAULT_MAX_RATE = 50;
+    public static final double DEFAULT_INCREASE_STEP = 0.5;
+    public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+    public static final Duration DEFAULT_HEALTHY_LATENCY = Duration.ofSeconds(2);
+
+    private static final double NANOS_IN_SECOND = 1_000_000_000d;
+
+    private final double minRate;
+    private final double maxRate;
+    private final double increaseStep;
+    private final double decreaseFactor;
+    private final long healthyLatencyNanos;
+    private final LongSupplier clock;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Constructor with default settings
+     */
+    public AdaptiveRateLimiter() {
+        this(DEFAULT_INITIAL_RATE, DEFAULT_MIN_RATE, DEFAULT_MAX_RATE,
+                DEFAULT_INCREASE_STEP, DEFAULT_DECREASE_FACTOR, DEFAULT_HEALTHY_LATENCY);
+    }
+
+    /**
+     * Constructor
+     * @param initialRate starting rate in requests per second
+     * @param minRate rate will never go below this value
+     * @param maxRate rate will never go above this value
+     * @param increaseStep requests per second added after every healthy response
+     * @param decreaseFactor multiplier (0..1) applied to the rate after throttling
+     * @param healthyLatency responses slower than this don't increase the rate
+     */
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate,
+                               double increaseStep, double decreaseFactor, Duration healthyLatency) {
+        this(initialRate, minRate, maxRate, increaseStep, decreaseFactor, healthyLatency, System::nanoTime);
+    }
+
+    AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double increaseStep,
+                        double decreaseFactor, Duration healthyLatency, LongSupplier clock) {
+        if (minRate <= 0 || minRate > maxRate || initialRate < minRate || initialRate > maxRate) {
+            throw new IllegalArgumentException("Rates must satisfy 0 < min <= initial <= max");
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("Decrease factor must be between 0 and 1");
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.increaseStep = increaseStep;
+        this.decreaseFactor = decreaseFactor;
+        this.healthyLatencyNanos = healthyLatency.toNanos();
+        this.clock = clock;
+        this.rate = initialRate;
+        this.tokens = 1;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Take one token, waiting until it is available
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        }
+    }
+
+    /**
+     * Take one token. The bucket may go into debt, so callers are served in the order they came
+     * @return nanoseconds the caller has to wait before using the token
+     */
+    synchronized long reserve() {
+        refill();
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * NANOS_IN_SECOND);
+    }
+
+    /**
+     * Report a successful response
+     * @param latency how long the request took
+     */
+    public synchronized void onSuccess(Duration latency) {
+        if (latency.toNanos() <= healthyLatencyNanos) {
+            refill();
+            rate = Math.min(maxRate, rate + increaseStep);
+        }
+    }
+
+    /**
+     * Report a throttled or failed response (429, 5xx, timeout)
+     */
+    public synchronized void onThrottle() {
+        refill();
+        rate = Math.max(minRate, rate * decreaseFactor);
+    }
+
+    /**
+     * Get current rate
+     * @return requests per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        // Burst is limited to one second worth of requests
+        tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefill) / NANOS_IN_SECOND * rate);
+        lastRefill = now;
+    }
+}
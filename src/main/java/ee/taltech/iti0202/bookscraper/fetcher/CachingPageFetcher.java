@@ -0,0 +1,89 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Fetcher decorator with an on-disk HTTP cache.
+ * Cached pages are revalidated with If-None-Match / If-Modified-Since, a 304 response reuses the cached body
+ * and updates its stored validators
+ */
+public class CachingPageFetcher implements PageFetcher {
+
+    private final PageFetcher delegate;
+    private final DiskPageStore store;
+
+    /**
+     * Constructor
+     * @param delegate fetcher doing the actual requests
+     * @param directory cache directory
+     */
+    public CachingPageFetcher(PageFetcher delegate, Path directory) {
+        this.delegate = delegate;
+        this.store = new DiskPageStore(directory);
+    }
+
+    @Override
+    public Page fetch(String url, Map<String, String> headers) throws FetchException {
+        Optional<Page> cached = store.load(url);
+        Map<String, String> requestHeaders = headers;
+
+        if (cached.isPresent()) {
+            requestHeaders = new HashMap<>(headers);
+            String etag = cached.get().header("ETag");
+            String lastModified = cached.get().header("Last-Modified");
+            if (etag != null) {
+                requestHeaders.put("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                requestHeaders.put("If-Modified-Since", lastModified);
+            }
+        }
+
+        Page page = delegate.fetch(url, requestHeaders);
+
+        if (page.isNotModified() && cached.isPresent()) {
+            return revalidated(cached.get(), page);
+        }
+        if (isCacheable(page)) {
+            store.save(page);
+        }
+        return page;
+    }
+
+    @Override
+    public InputStream openStream(String url) throws FetchException {
+        // Streamed resources are read once per crawl and are not cached
+        return delegate.openStream(url);
+    }
+
+    /**
+     * Update validators and date of a cached page from a 304 response and store it again
+     * @param cached cached page
+     * @param notModified 304 response
+     * @return cached page with the new headers
+     */
+    private Page revalidated(Page cached, Page notModified) {
+        if (notModified.headers().isEmpty()) {
+            return cached;
+        }
+        Map<String, String> headers = new HashMap<>(cached.headers());
+        headers.putAll(notModified.headers());
+        Page page = new Page(cached.url(), cached.statusCode(), cached.body(), headers);
+        store.save(page);
+        return page;
+    }
+
+    /**
+     * Only successful pages that can be revalidated later are worth storing
+     * @param page page
+     * @return true if page should be cached
+     */
+    private boolean isCacheable(Page page) {
+        return page.statusCode() >= 200 && page.statusCode() < 300
+                && (page.header("ETag") != null || page.header("Last-Modified") != null);
+    }
+}
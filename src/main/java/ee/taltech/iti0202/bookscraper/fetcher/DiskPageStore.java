@@ -0,0 +1,124 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Stores fetched pages on disk. Every page is kept in one file named after SHA-256 of its url:
+ * {@code <hash>.page} with the status code and headers, an empty line and the body.
+ * Metadata and body are replaced together, so a reader never gets a body with another version's headers
+ */
+public class DiskPageStore {
+
+    private static final String HEADER_PREFIX = "header.";
+
+    private final Path directory;
+
+    /**
+     * Constructor
+     * @param directory directory for the pages, created if missing
+     */
+    public DiskPageStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create page store directory " + directory, e);
+        }
+    }
+
+    /**
+     * Load a stored page
+     * @param url url of the page
+     * @return optional of page, empty if page is not stored or can't be read
+     */
+    public Optional<Page> load(String url) {
+        Path pageFile = directory.resolve(keyOf(url) + ".page");
+        if (!Files.exists(pageFile)) {
+            return Optional.empty();
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(pageFile, StandardCharsets.UTF_8)) {
+            StringBuilder metaText = new StringBuilder();
+            String line = reader.readLine();
+            while (line != null && !line.isEmpty()) {
+                metaText.append(line).append('\n');
+                line = reader.readLine();
+            }
+            StringWriter body = new StringWriter();
+            reader.transferTo(body);
+
+            Properties meta = new Properties();
+            meta.load(new StringReader(metaText.toString()));
+            return Optional.of(toPage(url, meta, body.toString()));
+        } catch (IOException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Page toPage(String url, Properties meta, String body) {
+        Map<String, String> headers = new HashMap<>();
+        for (String name : meta.stringPropertyNames()) {
+            if (name.startsWith(HEADER_PREFIX)) {
+                headers.put(name.substring(HEADER_PREFIX.length()), meta.getProperty(name));
+            }
+        }
+        int status = Integer.parseInt(meta.getProperty("status", "200"));
+        return new Page(url, status, body, headers);
+    }
+
+    /**
+     * Store a page, replacing the previous version atomically
+     * @param page page to store
+     */
+    public void save(Page page) {
+        String key = keyOf(page.url());
+        Properties meta = new Properties();
+        meta.setProperty("url", page.url());
+        meta.setProperty("status", String.valueOf(page.statusCode()));
+        page.headers().forEach((name, value) -> meta.setProperty(HEADER_PREFIX + name, value));
+
+        try {
+            Path pageTmp = Files.createTempFile(directory, key, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(pageTmp, StandardCharsets.UTF_8)) {
+                // Stored properties never contain an empty line, so the first one ends the metadata
+                meta.store(writer, null);
+                writer.write('\n');
+                writer.write(page.body());
+            }
+            Files.move(pageTmp, directory.resolve(key + ".page"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.printf("Can't store page %s: %s\n", page.url(), e.getMessage());
+        }
+    }
+
+    /**
+     * Get file name key of an url
+     * @param url url
+     * @return hex encoded SHA-256 of the url
+     */
+    static String keyOf(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import lombok.Getter;
+
+@Getter
+public class FetchException extends Exception {
+
+    public enum Reason {
+        INVALID_URL, TIMEOUT, CONNECTION, HTTP_STATUS, INTERRUPTED
+    }
+
+    private final String url;
+    private final Reason reason;
+    private final int statusCode;
+
+    /**
+     * Constructor
+     * @param url url which failed
+     * @param reason failure reason
+     * @param cause original exception
+     */
+    public FetchException(String url, Reason reason, Throwable cause) {
+        super(String.format("%s while fetching %s", reason, url), cause);
+        this.url = url;
+        this.reason = reason;
+        this.statusCode = -1;
+    }
+
+    /**
+     * Constructor for unsuccessful HTTP responses
+     * @param url url which failed
+     * @param statusCode HTTP status code
+     */
+    public FetchException(String url, int statusCode) {
+        super(String.format("HTTP %d while fetching %s", statusCode, url));
+        this.url = url;
+        this.reason = Reason.HTTP_STATUS;
+        this.statusCode = statusCode;
+    }
+}
@@ -0,0 +1,109 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP server which serves an archive made with RecordingPageFetcher.
+ * A request for {@code /path?query} is answered with the page recorded for {@code origin + /path?query}.
+ * Used for offline benchmarks and tests with controlled latency
+ */
+public class FixtureServer implements AutoCloseable {
+
+    private final DiskPageStore archive;
+    private final String origin;
+    private final Duration latency;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor. Server listens on a free port of the loopback interface
+     * @param archiveDirectory directory with recorded pages
+     * @param origin origin the pages were recorded from, e.g. https://www.apollo.ee
+     * @param latency delay before every response
+     */
+    public FixtureServer(Path archiveDirectory, String origin, Duration latency) {
+        this.archive = new DiskPageStore(archiveDirectory);
+        this.origin = origin;
+        this.latency = latency;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't start fixture server", e);
+        }
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Get base url of the server
+     * @return url like http://127.0.0.1:port
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * Create a fetcher which sends requests for the recorded origin to this server
+     * @return page fetcher
+     */
+    public PageFetcher fetcher() {
+        return new RewritingPageFetcher(new HttpClientPageFetcher(), origin, getBaseUrl());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!latency.isZero()) {
+                Thread.sleep(latency);
+            }
+            Optional<Page> page = archive.load(origin + exchange.getRequestURI());
+            if (page.isEmpty()) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String etag = page.get().header("ETag");
+            String lastModified = page.get().header("Last-Modified");
+            if (etag != null) {
+                exchange.getResponseHeaders().set("ETag", etag);
+            }
+            if (lastModified != null) {
+                exchange.getResponseHeaders().set("Last-Modified", lastModified);
+            }
+            if (etag != null && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(Page.NOT_MODIFIED, -1);
+                return;
+            }
+
+            byte[] body = page.get().body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+}
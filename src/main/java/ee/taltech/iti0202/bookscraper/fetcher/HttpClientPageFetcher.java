@@ -0,0 +1,143 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class HttpClientPageFetcher implements PageFetcher {
+
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(15);
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    /**
+     * Constructor with default timeouts
+     */
+    public HttpClientPageFetcher() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Constructor. The client keeps connections alive and multiplexes requests over HTTP/2 when possible
+     * @param connectTimeout timeout for establishing a connection
+     * @param requestTimeout timeout for a single request
+     */
+    public HttpClientPageFetcher(Duration connectTimeout, Duration requestTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public Page fetch(String url, Map<String, String> headers) throws FetchException {
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(new URI(url))
+                    .timeout(requestTimeout)
+                    .header("Accept-Encoding", "gzip, deflate")
+                    .GET();
+        } catch (Exception e) {
+            throw new FetchException(url, FetchException.Reason.INVALID_URL, e);
+        }
+        headers.forEach(request::header);
+
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (HttpTimeoutException e) {
+            throw new FetchException(url, FetchException.Reason.TIMEOUT, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FetchException(url, FetchException.Reason.INTERRUPTED, e);
+        } catch (IOException e) {
+            throw new FetchException(url, FetchException.Reason.CONNECTION, e);
+        }
+
+        if (response.statusCode() >= 400) {
+            throw new FetchException(url, response.statusCode());
+        }
+
+        Map<String, String> responseHeaders = new HashMap<>();
+        response.headers().map().forEach((name, values) -> {
+            if (!values.isEmpty()) {
+                responseHeaders.put(name.toLowerCase(), values.getFirst());
+            }
+        });
+
+        try {
+            String body = decode(response.body(), responseHeaders.get("content-encoding"));
+            return new Page(url, response.statusCode(), body, responseHeaders);
+        } catch (IOException e) {
+            throw new FetchException(url, FetchException.Reason.CONNECTION, e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String url) throws FetchException {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(new URI(url))
+                    .timeout(requestTimeout)
+                    .GET()
+                    .build();
+        } catch (Exception e) {
+            throw new FetchException(url, FetchException.Reason.INVALID_URL, e);
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpTimeoutException e) {
+            throw new FetchException(url, FetchException.Reason.TIMEOUT, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FetchException(url, FetchException.Reason.INTERRUPTED, e);
+        } catch (IOException e) {
+            throw new FetchException(url, FetchException.Reason.CONNECTION, e);
+        }
+
+        if (response.statusCode() >= 400) {
+            try (InputStream ignored = response.body()) {
+                throw new FetchException(url, response.statusCode());
+            } catch (IOException e) {
+                throw new FetchException(url, FetchException.Reason.CONNECTION, e);
+            }
+        }
+        return response.body();
+    }
+
+    /**
+     * Decompress response body according to its Content-Encoding
+     * @param body raw body
+     * @param encoding content encoding or null
+     * @return body as string
+     * @throws IOException if body can't be decompressed
+     */
+    private String decode(byte[] body, String encoding) throws IOException {
+        if (encoding == null || !List.of("gzip", "deflate").contains(encoding.trim().toLowerCase())) {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+        InputStream raw = new ByteArrayInputStream(body);
+        try (InputStream in = encoding.trim().equalsIgnoreCase("gzip")
+                ? new GZIPInputStream(raw) : new InflaterInputStream(raw)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
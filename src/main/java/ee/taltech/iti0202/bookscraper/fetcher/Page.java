@@ -0,0 +1,32 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.util.Map;
+
+/**
+ * Fetched page
+ * @param url requested url
+ * @param statusCode HTTP status code
+ * @param body page body, empty for 304 Not Modified
+ * @param headers response headers with lower-case names
+ */
+public record Page(String url, int statusCode, String body, Map<String, String> headers) {
+
+    public static final int NOT_MODIFIED = 304;
+
+    /**
+     * Get a response header
+     * @param name header name, case-insensitive
+     * @return header value or null
+     */
+    public String header(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /**
+     * Check whether server answered with 304 Not Modified
+     * @return true if page was not modified
+     */
+    public boolean isNotModified() {
+        return statusCode == NOT_MODIFIED;
+    }
+}
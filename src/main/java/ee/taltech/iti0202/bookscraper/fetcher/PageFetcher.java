@@ -0,0 +1,39 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public interface PageFetcher {
+
+    /**
+     * Fetch a page with additional request headers
+     * @param url url
+     * @param headers request headers
+     * @return fetched page
+     * @throws FetchException if the page could not be fetched
+     */
+    Page fetch(String url, Map<String, String> headers) throws FetchException;
+
+    /**
+     * Fetch a page
+     * @param url url
+     * @return fetched page
+     * @throws FetchException if the page could not be fetched
+     */
+    default Page fetch(String url) throws FetchException {
+        return fetch(url, Map.of());
+    }
+
+    /**
+     * Open a resource as a stream of raw bytes, e.g. a large or gzip compressed sitemap.
+     * By default the resource is fetched as a page and its body is streamed
+     * @param url url
+     * @return content, must be closed by the caller
+     * @throws FetchException if the resource could not be opened
+     */
+    default InputStream openStream(String url) throws FetchException {
+        return new ByteArrayInputStream(fetch(url).body().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,133 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Fetcher decorator that paces requests with a separate AdaptiveRateLimiter per host
+ * and retries requests the host refused because of load
+ */
+public class RateLimitedPageFetcher implements PageFetcher {
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * Request to the delegate
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    private interface Request<T> {
+
+        T send() throws FetchException;
+    }
+
+    private final PageFetcher delegate;
+    private final Supplier<AdaptiveRateLimiter> limiterFactory;
+    private final int maxRetries;
+    private final Map<String, AdaptiveRateLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor with default limiter settings
+     * @param delegate fetcher doing the actual requests
+     */
+    public RateLimitedPageFetcher(PageFetcher delegate) {
+        this(delegate, AdaptiveRateLimiter::new, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * Constructor
+     * @param delegate fetcher doing the actual requests
+     * @param limiterFactory creates a limiter for every new host
+     * @param maxRetries how many times a throttled request is repeated
+     */
+    public RateLimitedPageFetcher(PageFetcher delegate, Supplier<AdaptiveRateLimiter> limiterFactory,
+                                  int maxRetries) {
+        this.delegate = delegate;
+        this.limiterFactory = limiterFactory;
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public Page fetch(String url, Map<String, String> headers) throws FetchException {
+        return paced(url, () -> delegate.fetch(url, headers));
+    }
+
+    @Override
+    public InputStream openStream(String url) throws FetchException {
+        return paced(url, () -> delegate.openStream(url));
+    }
+
+    /**
+     * Send a request when the limiter of its host allows it, repeat it if the host refused it because of load
+     * @param url requested url
+     * @param request request to the delegate
+     * @return result of the request
+     * @param <T> result type
+     * @throws FetchException if the request failed or was throttled too many times
+     */
+    private <T> T paced(String url, Request<T> request) throws FetchException {
+        AdaptiveRateLimiter limiter = getLimiter(url);
+        if (limiter == null) {
+            return request.send();
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FetchException(url, FetchException.Reason.INTERRUPTED, e);
+            }
+
+            long start = System.nanoTime();
+            try {
+                T result = request.send();
+                limiter.onSuccess(Duration.ofNanos(System.nanoTime() - start));
+                return result;
+            } catch (FetchException e) {
+                if (!isThrottling(e)) {
+                    throw e;
+                }
+                limiter.onThrottle();
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get limiter for host of the url
+     * @param url url
+     * @return limiter or null if url has no host
+     */
+    public AdaptiveRateLimiter getLimiter(String url) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (host == null) {
+            return null;
+        }
+        return limiters.computeIfAbsent(host.toLowerCase(), h -> limiterFactory.get());
+    }
+
+    /**
+     * Check whether failure means the host is overloaded
+     * @param e failure
+     * @return true for timeouts, connection errors, 429 and 5xx responses
+     */
+    private boolean isThrottling(FetchException e) {
+        return switch (e.getReason()) {
+            case TIMEOUT, CONNECTION -> true;
+            case HTTP_STATUS -> e.getStatusCode() == 429 || e.getStatusCode() >= 500;
+            default -> false;
+        };
+    }
+}
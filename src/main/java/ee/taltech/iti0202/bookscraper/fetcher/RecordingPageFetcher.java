@@ -0,0 +1,40 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Fetcher decorator which saves every successfully fetched page into an archive.
+ * The archive can be served later with ReplayPageFetcher or FixtureServer
+ */
+public class RecordingPageFetcher implements PageFetcher {
+
+    private final PageFetcher delegate;
+    private final DiskPageStore archive;
+
+    /**
+     * Constructor
+     * @param delegate fetcher doing the actual requests
+     * @param archiveDirectory directory to record pages into
+     */
+    public RecordingPageFetcher(PageFetcher delegate, Path archiveDirectory) {
+        this.delegate = delegate;
+        this.archive = new DiskPageStore(archiveDirectory);
+    }
+
+    @Override
+    public Page fetch(String url, Map<String, String> headers) throws FetchException {
+        Page page = delegate.fetch(url, headers);
+        if (page.statusCode() >= 200 && page.statusCode() < 300) {
+            archive.save(page);
+        }
+        return page;
+    }
+
+    @Override
+    public InputStream openStream(String url) throws FetchException {
+        // Streamed resources aren't pages and are not recorded
+        return delegate.openStream(url);
+    }
+}
@@ -0,0 +1,48 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Fetcher which serves pages from an archive made with RecordingPageFetcher, without any network access.
+ * Pages missing from the archive are reported as 404
+ */
+public class ReplayPageFetcher implements PageFetcher {
+
+    private static final int NOT_FOUND = 404;
+
+    private final DiskPageStore archive;
+    private final Duration latency;
+
+    /**
+     * Constructor without simulated latency
+     * @param archiveDirectory directory with recorded pages
+     */
+    public ReplayPageFetcher(Path archiveDirectory) {
+        this(archiveDirectory, Duration.ZERO);
+    }
+
+    /**
+     * Constructor
+     * @param archiveDirectory directory with recorded pages
+     * @param latency simulated latency of every request
+     */
+    public ReplayPageFetcher(Path archiveDirectory, Duration latency) {
+        this.archive = new DiskPageStore(archiveDirectory);
+        this.latency = latency;
+    }
+
+    @Override
+    public Page fetch(String url, Map<String, String> headers) throws FetchException {
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FetchException(url, FetchException.Reason.INTERRUPTED, e);
+            }
+        }
+        return archive.load(url).orElseThrow(() -> new FetchException(url, NOT_FOUND));
+    }
+}
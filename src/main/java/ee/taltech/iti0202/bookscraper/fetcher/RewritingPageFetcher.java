@@ -0,0 +1,73 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Fetcher decorator which sends requests for one origin to another one, e.g. to a local FixtureServer.
+ * Returned pages keep the original url
+ */
+public class RewritingPageFetcher implements PageFetcher {
+
+    private final PageFetcher delegate;
+    private final String fromOrigin;
+    private final String toOrigin;
+
+    /**
+     * Constructor
+     * @param delegate fetcher doing the actual requests
+     * @param fromOrigin origin to replace, e.g. https://www.apollo.ee
+     * @param toOrigin origin to send requests to, e.g. http://localhost:8080
+     */
+    public RewritingPageFetcher(PageFetcher delegate, String fromOrigin, String toOrigin) {
+        this.delegate = delegate;
+        this.fromOrigin = fromOrigin;
+        this.toOrigin = toOrigin;
+    }
+
+    @Override
+    public Page fetch(String url, Map<String, String> headers) throws FetchException {
+        if (!url.startsWith(fromOrigin)) {
+            return delegate.fetch(url, headers);
+        }
+        try {
+            Page page = delegate.fetch(rewrite(url), headers);
+            return new Page(url, page.statusCode(), page.body(), page.headers());
+        } catch (FetchException e) {
+            throw withOriginalUrl(url, e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String url) throws FetchException {
+        if (!url.startsWith(fromOrigin)) {
+            return delegate.openStream(url);
+        }
+        try {
+            return delegate.openStream(rewrite(url));
+        } catch (FetchException e) {
+            throw withOriginalUrl(url, e);
+        }
+    }
+
+    /**
+     * Replace origin of an url
+     * @param url url starting with the origin to replace
+     * @return url with the new origin
+     */
+    private String rewrite(String url) {
+        return toOrigin + url.substring(fromOrigin.length());
+    }
+
+    /**
+     * Report failure of a rewritten request under the original url
+     * @param url original url
+     * @param e failure of the rewritten request
+     * @return the same failure with the original url
+     */
+    private FetchException withOriginalUrl(String url, FetchException e) {
+        return e.getReason() == FetchException.Reason.HTTP_STATUS
+                ? new FetchException(url, e.getStatusCode())
+                : new FetchException(url, e.getReason(), e.getCause());
+    }
+}
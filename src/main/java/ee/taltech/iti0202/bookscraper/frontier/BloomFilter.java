@@ -0,0 +1,181 @@
+package ee.taltech.iti0202.bookscraper.frontier;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloom filter stored in a memory-mapped file, so it survives restarts and is shared through the page cache.
+ * Bits are set with compare-and-set, adding and checking is safe from many threads without locking.
+ * The header holds an initialized flag, which the owner sets once the filter has been filled with existing values
+ */
+public class BloomFilter implements AutoCloseable {
+
+    private static final int MAGIC = 0x424c4f4d;
+    private static final int HEADER_SIZE = 64;
+    private static final int INITIALIZED_OFFSET = 16;
+    private static final int INITIALIZED = 1;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long bits;
+    private final int hashes;
+
+    private BloomFilter(FileChannel channel, MappedByteBuffer buffer, long bits, int hashes) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Open a filter file or create a new one sized for expected insertions
+     * @param file filter file
+     * @param expectedInsertions expected amount of added values
+     * @param falsePositiveRate wanted false positive probability, e.g. 0.01
+     * @return filter
+     * @throws IOException if the file can't be opened or has a wrong format
+     */
+    public static BloomFilter open(Path file, long expectedInsertions, double falsePositiveRate) throws IOException {
+        boolean created = !Files.exists(file) || Files.size(file) == 0;
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            long bits;
+            int hashes;
+            if (created) {
+                bits = optimalBits(expectedInsertions, falsePositiveRate);
+                hashes = optimalHashes(expectedInsertions, bits);
+            } else {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IOException("Not a bloom filter file: " + file);
+                }
+                bits = header.getLong(4);
+                hashes = header.getInt(12);
+            }
+
+            long size = HEADER_SIZE + bits / Byte.SIZE;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Bloom filter is too big: " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (created) {
+                buffer.putInt(0, MAGIC);
+                buffer.putLong(4, bits);
+                buffer.putInt(12, hashes);
+            }
+            return new BloomFilter(channel, buffer, bits, hashes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Add a value
+     * @param value value
+     */
+    public void add(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bits);
+            int offset = HEADER_SIZE + (int) (bit >>> 6) * Long.BYTES;
+            long mask = 1L << (bit & 63);
+            long word = (long) LONGS.getVolatile(buffer, offset);
+            while ((word & mask) == 0 && !LONGS.compareAndSet(buffer, offset, word, word | mask)) {
+                word = (long) LONGS.getVolatile(buffer, offset);
+            }
+        }
+    }
+
+    /**
+     * Check a value
+     * @param value value
+     * @return false if value was definitely never added, true if it probably was
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bits);
+            int offset = HEADER_SIZE + (int) (bit >>> 6) * Long.BYTES;
+            if (((long) LONGS.getVolatile(buffer, offset) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether filling the filter with existing values has finished, possibly in an earlier run
+     * @return true if the initialized flag is set
+     */
+    public boolean isInitialized() {
+        return buffer.getInt(INITIALIZED_OFFSET) == INITIALIZED;
+    }
+
+    /**
+     * Set the initialized flag and write the filter to disk, so a filter whose filling was interrupted
+     * is filled again on the next open
+     */
+    public void markInitialized() {
+        buffer.force();
+        buffer.putInt(INITIALIZED_OFFSET, INITIALIZED);
+        buffer.force();
+    }
+
+    /**
+     * Get size of the bit array
+     * @return amount of bits
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private static long optimalBits(long expectedInsertions, double falsePositiveRate) {
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        // Whole longs only, so every word can be updated atomically
+        return Math.max(Long.SIZE, (bits + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+    }
+
+    private static int optimalHashes(long expectedInsertions, long bits) {
+        return Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * 64-bit FNV-1a of UTF-8 bytes, finished with a mixing step for better bit distribution
+     * @param value value
+     * @return hash
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
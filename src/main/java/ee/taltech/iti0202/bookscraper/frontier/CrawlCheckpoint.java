@@ -0,0 +1,162 @@
+package ee.taltech.iti0202.bookscraper.frontier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only log of finished listing pages and product urls, so an interrupted crawl can resume where it stopped.
+ * Records are kept per scope, e.g. per crawled genre, and a finished crawl clears only its own scope.
+ * Every record is one line; a line cut by a crash has no line break and is ignored when the log is loaded
+ */
+public class CrawlCheckpoint implements AutoCloseable {
+
+    private static final String PAGE = "P";
+    private static final String BOOK = "B";
+    private static final String CLEAR = "C";
+
+    private final FileChannel channel;
+    private final Set<String> pages = ConcurrentHashMap.newKeySet();
+    private final Set<String> books = ConcurrentHashMap.newKeySet();
+
+    private CrawlCheckpoint(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Open a checkpoint log, loading its finished records. Records of cleared scopes are dropped from the file
+     * @param file log file, created if missing
+     * @return checkpoint
+     * @throws IOException if the file can't be read
+     */
+    public static CrawlCheckpoint open(Path file) throws IOException {
+        String log = Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : "";
+        // The torn last record is dropped
+        String[] lines = log.substring(0, log.lastIndexOf('\n') + 1).split("\n");
+
+        Set<String> records = new LinkedHashSet<>();
+        for (String line : lines) {
+            String[] fields = line.split(" ", 3);
+            if (fields.length == 2 && fields[0].equals(CLEAR)) {
+                records.removeIf(record -> record.startsWith(PAGE + " " + fields[1] + " ")
+                        || record.startsWith(BOOK + " " + fields[1] + " "));
+            } else if (fields.length == 3 && (fields[0].equals(PAGE) || fields[0].equals(BOOK))) {
+                records.add(line);
+            }
+        }
+
+        // Rewrite the log with live records only, so it doesn't grow with every finished crawl
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(compacted, records.isEmpty() ? "" : String.join("\n", records) + "\n",
+                StandardCharsets.UTF_8);
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(channel);
+        for (String record : records) {
+            String key = record.substring(2);
+            if (record.startsWith(PAGE)) {
+                checkpoint.pages.add(key);
+            } else {
+                checkpoint.books.add(key);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Check whether all books of a listing page were processed
+     * @param scope scope of the crawl, e.g. genre name
+     * @param listingUrl listing page url with page number
+     * @return true if page is done
+     */
+    public boolean isPageDone(String scope, String listingUrl) {
+        return pages.contains(key(scope, listingUrl));
+    }
+
+    /**
+     * Check whether a book was processed
+     * @param scope scope of the crawl, e.g. genre name
+     * @param bookUrl product url
+     * @return true if book is done
+     */
+    public boolean isBookDone(String scope, String bookUrl) {
+        return books.contains(key(scope, bookUrl));
+    }
+
+    /**
+     * Record a finished listing page. The record is forced to disk
+     * @param scope scope of the crawl, e.g. genre name
+     * @param listingUrl listing page url with page number
+     */
+    public void markPageDone(String scope, String listingUrl) {
+        String key = key(scope, listingUrl);
+        if (pages.add(key)) {
+            append(PAGE + " " + key, true);
+        }
+    }
+
+    /**
+     * Record a finished book
+     * @param scope scope of the crawl, e.g. genre name
+     * @param bookUrl product url
+     */
+    public void markBookDone(String scope, String bookUrl) {
+        String key = key(scope, bookUrl);
+        if (books.add(key)) {
+            append(BOOK + " " + key, false);
+        }
+    }
+
+    /**
+     * Forget all records of a scope, e.g. after its crawl finished completely. Other scopes are kept
+     * @param scope scope of the crawl, e.g. genre name
+     */
+    public synchronized void clear(String scope) {
+        String prefix = scope + " ";
+        pages.removeIf(key -> key.startsWith(prefix));
+        books.removeIf(key -> key.startsWith(prefix));
+        append(CLEAR + " " + scope, true);
+    }
+
+    /**
+     * Get key of a record
+     * @param scope scope without spaces
+     * @param url url
+     * @return key
+     */
+    private static String key(String scope, String url) {
+        if (scope.isEmpty() || scope.contains(" ")) {
+            throw new IllegalArgumentException("Checkpoint scope must be a single word, got '" + scope + "'");
+        }
+        return scope + " " + url;
+    }
+
+    private synchronized void append(String record, boolean force) {
+        try {
+            ByteBuffer line = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.out.printf("Can't write crawl checkpoint: %s\n", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
@@ -0,0 +1,72 @@
+package ee.taltech.iti0202.bookscraper.frontier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Set of already stored book urls kept in a persistent Bloom filter.
+ * A negative answer is exact, so the database has to be asked only about urls the filter has probably seen
+ */
+public class UrlFrontier implements AutoCloseable {
+
+    public static final long DEFAULT_EXPECTED_URLS = 2_000_000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private final BloomFilter filter;
+
+    /**
+     * Constructor
+     * @param filter bloom filter with known urls
+     */
+    public UrlFrontier(BloomFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Open a frontier file sized for DEFAULT_EXPECTED_URLS urls
+     * @param file frontier file
+     * @return frontier
+     * @throws IOException if the file can't be opened
+     */
+    public static UrlFrontier open(Path file) throws IOException {
+        return new UrlFrontier(BloomFilter.open(file, DEFAULT_EXPECTED_URLS, DEFAULT_FALSE_POSITIVE_RATE));
+    }
+
+    /**
+     * Check whether the url is probably known. Never answers false for an added url
+     * @param url url
+     * @return false if url is definitely new
+     */
+    public boolean mightBeKnown(String url) {
+        return filter.mightContain(url);
+    }
+
+    /**
+     * Remember an url
+     * @param url url
+     */
+    public void add(String url) {
+        filter.add(url);
+    }
+
+    /**
+     * Check whether the frontier has been filled with already stored urls. A new frontier or one whose filling
+     * was interrupted isn't seeded
+     * @return true if frontier is seeded
+     */
+    public boolean isSeeded() {
+        return filter.isInitialized();
+    }
+
+    /**
+     * Record that all already stored urls were added
+     */
+    public void markSeeded() {
+        filter.markInitialized();
+    }
+
+    @Override
+    public void close() throws IOException {
+        filter.close();
+    }
+}
@@ -9,10 +9,14 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.Duration;
+import java.time.Instant;
+
 @Getter
 @Setter
 @Entity
@@ -20,7 +24,8 @@ import lombok.Setter;
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_id_seq")
+    @SequenceGenerator(name = "book_id_seq", sequenceName = "book_id_seq", allocationSize = 50)
     @Column(name = "id")
     private int id;
 
@@ -47,6 +52,10 @@ public class Book {
     @Column(name = "genre")
     @Enumerated(EnumType.STRING)
     private BookGenre genre;
+    @Column(name = "partial")
+    private boolean partial;
+    @Column(name = "last_scraped_at")
+    private Instant lastScrapedAt;
 
     private Book(String title, Author author, String language, String publisher, String url, String publishedAt,
                 Integer pages, Double price, String format, BookGenre genre) {
@@ -68,26 +77,31 @@ public class Book {
     @Override
     public String toString() {
         return String.format("%s - %s (%s, %s)",
-                getAuthor().fullName(), getTitle(), getPublishedAt(), getGenre());
+                getAuthorName(), getTitle(), getPublishedAt(), getGenre());
+    }
+
+    public String getAuthorName() {
+        return getAuthor() != null ? getAuthor().fullName() : "";
+    }
+
+    public boolean isStale(Duration ttl) {
+        return lastScrapedAt == null || lastScrapedAt.plus(ttl).isBefore(Instant.now());
+    }
+
+    /**
+     * Copy the book with all its columns. The author is shared with the copy
+     * @return copy
+     */
+    public Book copy() {
+        Book copy = new Book(title, author, language, publisher, url, publishedAt, pages, price, format, genre);
+        copy.setId(id);
+        copy.setPartial(partial);
+        copy.setLastScrapedAt(lastScrapedAt);
+        return copy;
     }
 
     public void presentBook() {
-        System.out.printf("""
-                        \nBook title: %s
-                        Book publisher: %s
-                        Book author: %s
-                        Book genre: %s
-                        Book format: %s
-                        Book language: %s
-                        Book price: %.2f
-                        """,
-                getTitle(),
-                getPublisher(),
-                getAuthor().fullName(),
-                getGenre(),
-                getFormat(),
-                getLanguage(),
-                getPrice());
+        BookSummary.of(this).present();
     }
 
     public static BookBuilder builder() {
@@ -106,6 +120,7 @@ public class Book {
         private Double price;
         private String format;
         private BookGenre genre;
+        private boolean partial;
 
         public BookBuilder withTitle(String title) {
             this.title = title;
@@ -157,8 +172,18 @@ public class Book {
             return this;
         }
 
+        public BookBuilder withGenre(BookGenre genre) {
+            this.genre = genre;
+            return this;
+        }
+
+        public BookBuilder withPartial(boolean partial) {
+            this.partial = partial;
+            return this;
+        }
+
         public Book build() {
-            return new Book(
+            Book book = new Book(
                     title,
                     author,
                     language,
@@ -170,6 +195,8 @@ public class Book {
                     format,
                     genre
             );
+            book.setPartial(partial);
+            return book;
         }
     }
 }
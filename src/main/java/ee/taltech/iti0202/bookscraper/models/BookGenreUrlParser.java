@@ -64,4 +64,20 @@ public class BookGenreUrlParser {
             default -> "";
         };
     }
+
+    /**
+     * Parse listing url to the genre it lists
+     * @param url listing url, optionally with a query like '?page=2'
+     * @return genre's enum or UNKNOWN_GENRE if url doesn't list a genre
+     */
+    public static BookGenre getGenreByUrl(String url) {
+        int query = url.indexOf('?');
+        String listingUrl = query < 0 ? url : url.substring(0, query);
+        for (BookGenre genre : BookGenre.values()) {
+            if (getUrlByGenre(genre).equals(listingUrl)) {
+                return genre;
+            }
+        }
+        return BookGenre.UNKNOWN_GENRE;
+    }
 }
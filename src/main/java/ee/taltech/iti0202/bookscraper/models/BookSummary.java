@@ -0,0 +1,65 @@
+package ee.taltech.iti0202.bookscraper.models;
+
+/**
+ * Read-only view of a stored book with its author's name, read with one query instead of loading entities
+ * @param id book's id
+ * @param url book's url
+ * @param title title
+ * @param authorFirstName author's first name or null if the book has no author
+ * @param authorLastName author's last name or null if the book has no author
+ * @param publisher publisher
+ * @param publishedAt publishing year
+ * @param genre genre
+ * @param format format
+ * @param language language
+ * @param price price
+ */
+public record BookSummary(int id, String url, String title, String authorFirstName, String authorLastName,
+                          String publisher, String publishedAt, BookGenre genre, String format, String language,
+                          Double price) {
+
+    /**
+     * Get summary of a book entity
+     * @param book book
+     * @return summary
+     */
+    public static BookSummary of(Book book) {
+        Author author = book.getAuthor();
+        return new BookSummary(book.getId(), book.getUrl(), book.getTitle(),
+                author != null ? author.getFirstName() : null, author != null ? author.getLastName() : null,
+                book.getPublisher(), book.getPublishedAt(), book.getGenre(), book.getFormat(), book.getLanguage(),
+                book.getPrice());
+    }
+
+    /**
+     * Get author's full name
+     * @return full name or empty string if the book has no author
+     */
+    public String authorName() {
+        return authorFirstName != null ? String.format("%s %s", authorFirstName, authorLastName) : "";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - %s (%s, %s)", authorName(), title, publishedAt, genre);
+    }
+
+    public void present() {
+        System.out.printf("""
+                        \nBook title: %s
+                        Book publisher: %s
+                        Book author: %s
+                        Book genre: %s
+                        Book format: %s
+                        Book language: %s
+                        Book price: %.2f
+                        """,
+                title,
+                publisher,
+                authorName(),
+                genre,
+                format,
+                language,
+                price);
+    }
+}
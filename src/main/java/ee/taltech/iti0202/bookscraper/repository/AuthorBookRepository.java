@@ -3,23 +3,173 @@ package ee.taltech.iti0202.bookscraper.repository;
 import ee.taltech.iti0202.bookscraper.models.Author;
 import ee.taltech.iti0202.bookscraper.models.Book;
 import ee.taltech.iti0202.bookscraper.models.BookGenre;
+import ee.taltech.iti0202.bookscraper.models.BookSummary;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.flywaydb.core.Flyway;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.cfg.Configuration;
-
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.stat.Statistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class AuthorBookRepository {
 
+    public static final int BATCH_SIZE = 50;
+    public static final String BOOK_CACHE_SIZE_PROPERTY = "bookscraper.book_cache.max_size";
+    public static final String SCHEMA_MIGRATE_PROPERTY = "bookscraper.schema.migrate";
+    public static final int FETCH_SIZE = 500;
+    private static final String BOOK_COLUMNS = "author_id, title, language, publisher, published_at, pages, "
+            + "price, format, genre, partial, last_scraped_at";
+    private static final String INSERT_BOOK = "INSERT INTO book (" + BOOK_COLUMNS + ", url, id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String BOOK_SUMMARY_SELECT = "SELECT new " + BookSummary.class.getName()
+            + "(b.id, b.url, b.title, a.firstName, a.lastName, b.publisher, b.publishedAt, b.genre, b.format, "
+            + "b.language, b.price) FROM Book b LEFT JOIN b.author a";
+    public static final int DEFAULT_MIN_IDLE_CONNECTIONS = 2;
+    // Enough for every book processed at once by a crawl with default concurrency
+    public static final int DEFAULT_MAX_POOL_SIZE = 16;
+
     private final SessionFactory sessionFactory;
+    private final BookCache bookCache;
+    private final ConnectionPoolMetrics connectionPoolMetrics;
+    private final boolean postgres;
 
     /**
      * Constructor
      */
     public AuthorBookRepository() {
-        Configuration configuration = new Configuration().addAnnotatedClass(Author.class).addAnnotatedClass(Book.class);
+        this(new Properties());
+    }
+
+    /**
+     * Constructor
+     * @param properties hibernate properties overriding the ones from hibernate.properties.
+     *                   Book cache size is set with bookscraper.book_cache.max_size,
+     *                   bookscraper.schema.migrate=false skips schema migrations
+     */
+    public AuthorBookRepository(Properties properties) {
+        Configuration configuration = new Configuration();
+        // Batch inserts and updates unless hibernate.properties says otherwise
+        setDefaultProperty(configuration, "hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        setDefaultProperty(configuration, "hibernate.order_inserts", "true");
+        setDefaultProperty(configuration, "hibernate.order_updates", "true");
+        // Round IN lists up to powers of two, so pages of different sizes share a few cached statements
+        setDefaultProperty(configuration, "hibernate.query.in_clause_parameter_padding", "true");
+        // HikariCP instead of the built-in pool, which isn't meant for concurrent use
+        setDefaultProperty(configuration, "hibernate.connection.provider_class",
+                HikariCPConnectionProvider.class.getName());
+        setDefaultProperty(configuration, "hibernate.hikari.minimumIdle",
+                String.valueOf(DEFAULT_MIN_IDLE_CONNECTIONS));
+        setDefaultProperty(configuration, "hibernate.hikari.maximumPoolSize",
+                String.valueOf(DEFAULT_MAX_POOL_SIZE));
+        configuration.addProperties(properties)
+                .addAnnotatedClass(Author.class).addAnnotatedClass(Book.class);
+        if (!"false".equalsIgnoreCase(configuration.getProperty(SCHEMA_MIGRATE_PROPERTY))) {
+            migrateSchema(configuration);
+        }
         this.sessionFactory = configuration.buildSessionFactory();
+        this.connectionPoolMetrics = registerPoolMetrics(sessionFactory);
+        this.postgres = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect() instanceof PostgreSQLDialect;
+
+        String bookCacheSize = configuration.getProperty(BOOK_CACHE_SIZE_PROPERTY);
+        this.bookCache = new BookCache(
+                bookCacheSize != null ? Integer.parseInt(bookCacheSize.trim()) : BookCache.DEFAULT_MAXIMUM_SIZE
+        );
+    }
+
+    /**
+     * Bring database schema to the latest version with migrations from db/migration.
+     * A database created before the schema was managed gets all of them, they keep existing tables and data
+     * @param configuration configuration with connection url and credentials
+     */
+    private static void migrateSchema(Configuration configuration) {
+        String url = configuration.getProperty("hibernate.connection.url");
+        if (url == null || url.isBlank()) {
+            return;
+        }
+        Flyway.configure()
+                .dataSource(
+                        url,
+                        configuration.getProperty("hibernate.connection.username"),
+                        configuration.getProperty("hibernate.connection.password")
+                )
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+
+    /**
+     * Start collecting metrics of the connection pool, if HikariCP is used
+     * @param sessionFactory session factory
+     * @return metrics or null for other connection providers
+     */
+    private static ConnectionPoolMetrics registerPoolMetrics(SessionFactory sessionFactory) {
+        ConnectionProvider provider = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(ConnectionProvider.class);
+        if (provider == null || !provider.isUnwrappableAs(HikariDataSource.class)) {
+            return null;
+        }
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        provider.unwrap(HikariDataSource.class).setMetricsTrackerFactory(metrics);
+        return metrics;
+    }
+
+    private static void setDefaultProperty(Configuration configuration, String name, String value) {
+        if (configuration.getProperty(name) == null) {
+            configuration.setProperty(name, value);
+        }
+    }
+
+    /**
+     * Get statistics of the session factory, collected when hibernate.generate_statistics is enabled
+     * @return statistics
+     */
+    Statistics getStatistics() {
+        return sessionFactory.getStatistics();
+    }
+
+    /**
+     * Get metrics of the connection pool
+     * @return optional of metrics, empty if HikariCP isn't the connection provider
+     */
+    public Optional<ConnectionPoolMetrics> getConnectionPoolMetrics() {
+        return Optional.ofNullable(connectionPoolMetrics);
+    }
+
+    /**
+     * Get cache of books by url, which answers getBookByUrl and getBooksByUrls before database
+     * @return book cache
+     */
+    public BookCache getBookCache() {
+        return bookCache;
     }
 
     /**
@@ -31,7 +181,7 @@ public class AuthorBookRepository {
         session.beginTransaction();
 
         try {
-            return session.createQuery("FROM Book", Book.class)
+            return session.createQuery("FROM Book b LEFT JOIN FETCH b.author", Book.class)
                     .getResultList();
         } catch (Exception e) {
             System.out.println(e.getMessage());
@@ -43,7 +193,188 @@ public class AuthorBookRepository {
     }
 
     /**
-     * Get author from DB by his name and surname
+     * Stream all the books from database. Rows are read with a cursor, FETCH_SIZE at a time,
+     * and books aren't kept in a session, so memory use doesn't grow with the table.
+     * The stream must be closed
+     * @return stream of books ordered by id
+     */
+    public Stream<Book> streamAllBooks() {
+        return stream(session -> session.createQuery(
+                "FROM Book b LEFT JOIN FETCH b.author ORDER BY b.id", Book.class
+        ));
+    }
+
+    /**
+     * Stream books of a genre from database, see streamAllBooks. The stream must be closed
+     * @param genre genre
+     * @return stream of books ordered by id
+     */
+    public Stream<Book> streamBooksByGenre(BookGenre genre) {
+        return stream(session -> session.createQuery(
+                        "FROM Book b LEFT JOIN FETCH b.author WHERE b.genre=:genre ORDER BY b.id", Book.class
+                )
+                .setParameter("genre", genre));
+    }
+
+    /**
+     * Stream summaries of all the books with names of their authors, read with one query joining the author,
+     * see streamAllBooks. The stream must be closed
+     * @return stream of summaries ordered by id
+     */
+    public Stream<BookSummary> streamBookSummaries() {
+        return stream(session -> session.createQuery(
+                BOOK_SUMMARY_SELECT + " ORDER BY b.id", BookSummary.class
+        ));
+    }
+
+    /**
+     * Stream summaries of books of a genre, see streamBookSummaries. The stream must be closed
+     * @param genre genre
+     * @return stream of summaries ordered by id
+     */
+    public Stream<BookSummary> streamBookSummariesByGenre(BookGenre genre) {
+        return stream(session -> session.createQuery(
+                        BOOK_SUMMARY_SELECT + " WHERE b.genre=:genre ORDER BY b.id", BookSummary.class
+                )
+                .setParameter("genre", genre));
+    }
+
+    /**
+     * Stream urls of all the books from database. The stream must be closed
+     * @return stream of urls
+     */
+    public Stream<String> streamAllBookUrls() {
+        return stream(session -> session.createQuery("SELECT b.url FROM Book b", String.class));
+    }
+
+    /**
+     * Open a stateless session and stream results of a query, the session is closed with the stream
+     * @param query query created in the session
+     * @return stream of results
+     * @param <T> result type
+     */
+    private <T> Stream<T> stream(Function<StatelessSession, Query<T>> query) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        // PostgreSQL only reads a result with a cursor inside a transaction
+        session.beginTransaction();
+
+        try {
+            return query.apply(session)
+                    .setFetchSize(FETCH_SIZE)
+                    .getResultStream()
+                    .onClose(() -> {
+                        session.getTransaction().commit();
+                        session.close();
+                    });
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get a page of books ordered by id. The next page starts after the id of the last book of this one,
+     * so a page is found with the primary key index however far it is. A failed read is rethrown,
+     * so a walk over the pages can't end early without notice
+     * @param afterId id of the last book of the previous page, 0 for the first page
+     * @param limit maximum amount of books
+     * @return list of books
+     */
+    public List<Book> getBooksAfter(int afterId, int limit) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            List<Book> books = session.createQuery(
+                            "FROM Book b LEFT JOIN FETCH b.author WHERE b.id > :afterId ORDER BY b.id", Book.class
+                    )
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit)
+                    .getResultList();
+            session.getTransaction().commit();
+            return books;
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Get a page of books of a genre ordered by id, see getBooksAfter
+     * @param genre genre
+     * @param afterId id of the last book of the previous page, 0 for the first page
+     * @param limit maximum amount of books
+     * @return list of books
+     */
+    public List<Book> getBooksByGenreAfter(BookGenre genre, int afterId, int limit) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            List<Book> books = session.createQuery(
+                            "FROM Book b LEFT JOIN FETCH b.author WHERE b.genre=:genre AND b.id > :afterId "
+                                    + "ORDER BY b.id", Book.class
+                    )
+                    .setParameter("genre", genre)
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit)
+                    .getResultList();
+            session.getTransaction().commit();
+            return books;
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Get urls of all the books from database
+     * @return list of urls
+     */
+    public List<String> getAllBookUrls() {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            return session.createQuery("SELECT b.url FROM Book b", String.class)
+                    .getResultList();
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return List.of();
+        } finally {
+            session.getTransaction().commit();
+            session.close();
+        }
+    }
+
+    /**
+     * Get all the authors from database, oldest first
+     * @return list of authors
+     */
+    public List<Author> getAllAuthors() {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            return session.createQuery("FROM Author a ORDER BY a.id", Author.class)
+                    .getResultList();
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return List.of();
+        } finally {
+            session.getTransaction().commit();
+            session.close();
+        }
+    }
+
+    /**
+     * Get author from DB by his name and surname. A failed read is rethrown, because callers store a new author
+     * when none is found
      * @param name name
      * @param surname surname
      * @return optional of author
@@ -53,19 +384,23 @@ public class AuthorBookRepository {
         session.beginTransaction();
 
         try {
-            return Optional.of(
-                    session.createQuery(
-                                    "FROM Author a WHERE a.firstName=:firstName AND a.lastName=:lastName",
-                                    Author.class
-                            )
-                            .setParameter("firstName", name)
-                            .setParameter("lastName", surname)
-                            .getSingleResult()
-            );
-        } catch (Exception e) {
-            return Optional.empty();
-        } finally {
+            // Oldest author wins if duplicates were stored before authors were cached
+            Optional<Author> author = session.createQuery(
+                            "FROM Author a WHERE a.firstName=:firstName AND a.lastName=:lastName ORDER BY a.id",
+                            Author.class
+                    )
+                    .setParameter("firstName", name)
+                    .setParameter("lastName", surname)
+                    .setMaxResults(1)
+                    .getResultList()
+                    .stream()
+                    .findFirst();
             session.getTransaction().commit();
+            return author;
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
             session.close();
         }
     }
@@ -81,7 +416,7 @@ public class AuthorBookRepository {
 
         try {
             return session.createQuery(
-                    "FROM Book b join Author a ON b.author.id = a.id "
+                    "FROM Book b JOIN FETCH b.author a "
                             + "WHERE a.firstName=:name AND a.lastName=:lastName", Book.class)
                     .setParameter("name", author.getFirstName())
                     .setParameter("lastName", author.getLastName())
@@ -101,15 +436,19 @@ public class AuthorBookRepository {
      * @return optional of book
      */
     public Optional<Book> getBookByUrl(String url) {
+        Book cachedBook = bookCache.get(url);
+        if (cachedBook != null) {
+            return Optional.of(cachedBook);
+        }
         Session session = sessionFactory.getCurrentSession();
         session.beginTransaction();
 
         try {
-            return Optional.of(
-                    session.createQuery("FROM Book b WHERE b.url=:url", Book.class)
-                            .setParameter("url", url)
-                            .getSingleResult()
-            );
+            Book book = session.createQuery("FROM Book b LEFT JOIN FETCH b.author WHERE b.url=:url", Book.class)
+                    .setParameter("url", url)
+                    .getSingleResult();
+            bookCache.put(book);
+            return Optional.of(book);
         } catch (Exception e) {
             return Optional.empty();
         } finally {
@@ -119,7 +458,49 @@ public class AuthorBookRepository {
     }
 
     /**
-     * Add a book to an author with provided ID
+     * Get stored books among the provided urls with one query.
+     * A failed query is thrown, so the caller doesn't mistake stored books for new ones
+     * @param urls product urls, e.g. of one listing page
+     * @return stored books, urls without a book are skipped
+     */
+    public List<Book> getBooksByUrls(Collection<String> urls) {
+        List<Book> books = new ArrayList<>();
+        List<String> missingUrls = new ArrayList<>();
+        for (String url : urls) {
+            Book cachedBook = bookCache.get(url);
+            if (cachedBook != null) {
+                books.add(cachedBook);
+            } else {
+                missingUrls.add(url);
+            }
+        }
+        if (missingUrls.isEmpty()) {
+            return books;
+        }
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            for (Book book : session.createQuery(
+                            "FROM Book b LEFT JOIN FETCH b.author WHERE b.url IN :urls", Book.class
+                    )
+                    .setParameter("urls", missingUrls)
+                    .getResultList()) {
+                bookCache.put(book);
+                books.add(book);
+            }
+            session.getTransaction().commit();
+            return books;
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Add a book to an author with provided ID. Already stored book is updated
      * @param authorId Author's ID
      * @param book book to add
      */
@@ -127,12 +508,235 @@ public class AuthorBookRepository {
         Session session = sessionFactory.getCurrentSession();
         session.beginTransaction();
 
-        Author author = session.get(Author.class, authorId);
-        author.addBook(book);
+        try {
+            Author author = session.get(Author.class, authorId);
+
+            if (book.getId() == 0) {
+                author.addBook(book);
+                session.persist(book);
+            } else {
+                author.addBook(session.merge(book));
+                book.setAuthor(author);
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+        bookCache.put(book);
+    }
 
-        session.persist(book);
-        session.getTransaction().commit();
-        session.close();
+    /**
+     * Add a book without an author to DB
+     * @param book book to add
+     */
+    public void addBook(Book book) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            session.persist(book);
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+        bookCache.put(book);
+    }
+
+    /**
+     * Save changes of an already stored book
+     * @param book book to update
+     */
+    public void updateBook(Book book) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            session.merge(book);
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+        bookCache.put(book);
+    }
+
+    /**
+     * Insert a book or update the stored book with the same url in place.
+     * On PostgreSQL it is a single INSERT ... ON CONFLICT (url) DO UPDATE statement, so concurrent scrapes
+     * of one url don't store it twice and a re-scrape updates price and details of the stored row
+     * @param book book with the id of its stored author, gets the id of its row
+     */
+    public void upsertBook(Book book) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            if (postgres) {
+                NativeQuery<Integer> upsert = session.createNativeQuery(
+                        INSERT_BOOK + " ON CONFLICT (url) DO UPDATE SET author_id = EXCLUDED.author_id, "
+                                + "title = EXCLUDED.title, language = EXCLUDED.language, "
+                                + "publisher = EXCLUDED.publisher, published_at = EXCLUDED.published_at, "
+                                + "pages = EXCLUDED.pages, price = EXCLUDED.price, format = EXCLUDED.format, "
+                                + "genre = EXCLUDED.genre, partial = EXCLUDED.partial, "
+                                + "last_scraped_at = EXCLUDED.last_scraped_at "
+                                + "RETURNING id",
+                        Integer.class
+                );
+                bindBookColumns(upsert, book)
+                        .setParameter(12, book.getUrl())
+                        .setParameter(13, nextBookId(session, book));
+                book.setId(upsert.getSingleResult());
+            } else {
+                // Other databases: the update locks a stored row until the transaction ends
+                NativeQuery<Void> update = session.createNativeQuery(
+                        "UPDATE book SET author_id=?, title=?, language=?, publisher=?, published_at=?, pages=?, "
+                                + "price=?, format=?, genre=?, partial=?, last_scraped_at=? WHERE url=?",
+                        Void.class
+                );
+                if (bindBookColumns(update, book).setParameter(12, book.getUrl()).executeUpdate() == 0) {
+                    NativeQuery<Void> insert = session.createNativeQuery(INSERT_BOOK, Void.class);
+                    bindBookColumns(insert, book)
+                            .setParameter(12, book.getUrl())
+                            .setParameter(13, nextBookId(session, book))
+                            .executeUpdate();
+                }
+                book.setId(session.createNativeQuery("SELECT id FROM book WHERE url=?", Integer.class)
+                        .setParameter(1, book.getUrl())
+                        .getSingleResult());
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+        bookCache.put(book);
+    }
+
+    /**
+     * Bind values of BOOK_COLUMNS to the first parameters of a native query
+     * @param query query
+     * @param book book
+     * @return the same query
+     * @param <T> result type
+     */
+    private static <T> NativeQuery<T> bindBookColumns(NativeQuery<T> query, Book book) {
+        return query.setParameter(1, book.getAuthor() != null ? book.getAuthor().getId() : null,
+                        StandardBasicTypes.INTEGER)
+                .setParameter(2, book.getTitle(), StandardBasicTypes.STRING)
+                .setParameter(3, book.getLanguage(), StandardBasicTypes.STRING)
+                .setParameter(4, book.getPublisher(), StandardBasicTypes.STRING)
+                .setParameter(5, book.getPublishedAt(), StandardBasicTypes.STRING)
+                .setParameter(6, book.getPages(), StandardBasicTypes.INTEGER)
+                .setParameter(7, book.getPrice(), StandardBasicTypes.DOUBLE)
+                .setParameter(8, book.getFormat(), StandardBasicTypes.STRING)
+                .setParameter(9, book.getGenre() != null ? book.getGenre().name() : null, StandardBasicTypes.STRING)
+                .setParameter(10, book.isPartial(), StandardBasicTypes.BOOLEAN)
+                .setParameter(11, book.getLastScrapedAt(), StandardBasicTypes.INSTANT);
+    }
+
+    /**
+     * Take the next book id from the same pooled sequence generator Hibernate uses for persisted books
+     * @param session session
+     * @param book book
+     * @return id
+     */
+    private int nextBookId(Session session, Book book) {
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) sessionFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(Book.class)
+                .getGenerator();
+        return ((Number) generator.generate(
+                session.unwrap(SharedSessionContractImplementor.class), book, null, EventType.INSERT
+        )).intValue();
+    }
+
+    /**
+     * Save books and their authors in one transaction, inserts are sent in JDBC batches.
+     * An author with an id, e.g. resolved through AuthorCache, is referenced as is without any query.
+     * Authors without an id are looked up by first and last name with a single query and missing ones are created,
+     * their books get the managed author with the same name
+     * @param books new or already stored books
+     */
+    public void saveAll(Collection<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            Map<String, Author> pageAuthors = new HashMap<>();
+            for (Book book : books) {
+                Author author = book.getAuthor();
+                if (author != null && author.getId() == 0) {
+                    pageAuthors.putIfAbsent(authorKey(author.getFirstName(), author.getLastName()), author);
+                }
+            }
+
+            Map<String, Author> authors = new HashMap<>();
+            if (!pageAuthors.isEmpty()) {
+                CriteriaBuilder builder = session.getCriteriaBuilder();
+                CriteriaQuery<Author> query = builder.createQuery(Author.class);
+                Root<Author> root = query.from(Author.class);
+                query.where(builder.or(pageAuthors.values().stream()
+                        .map(author -> builder.and(
+                                builder.equal(root.get("firstName"), author.getFirstName()),
+                                builder.equal(root.get("lastName"), author.getLastName())
+                        ))
+                        .toArray(Predicate[]::new)));
+                session.createQuery(query)
+                        .getResultList()
+                        .forEach(author -> authors.putIfAbsent(
+                                authorKey(author.getFirstName(), author.getLastName()), author
+                        ));
+            }
+
+            for (Book book : books) {
+                Author pageAuthor = book.getAuthor();
+                if (pageAuthor != null && pageAuthor.getId() == 0) {
+                    Author author = authors.computeIfAbsent(
+                            authorKey(pageAuthor.getFirstName(), pageAuthor.getLastName()),
+                            key -> {
+                                Author newAuthor = Author.builder()
+                                        .withFirstName(pageAuthor.getFirstName())
+                                        .withLastName(pageAuthor.getLastName())
+                                        .withBooks(new ArrayList<>())
+                                        .build();
+                                session.persist(newAuthor);
+                                return newAuthor;
+                            });
+                    book.setAuthor(author);
+                }
+
+                if (book.getId() == 0) {
+                    session.persist(book);
+                } else {
+                    session.merge(book);
+                }
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+        books.forEach(bookCache::put);
+    }
+
+    private static String authorKey(String firstName, String lastName) {
+        return firstName + "\u0000" + lastName;
     }
 
     /**
@@ -159,7 +763,7 @@ public class AuthorBookRepository {
         session.beginTransaction();
 
         try {
-            return session.createQuery("FROM Book b WHERE b.genre=:genre", Book.class)
+            return session.createQuery("FROM Book b LEFT JOIN FETCH b.author WHERE b.genre=:genre", Book.class)
                     .setParameter("genre", genre)
                     .getResultList();
         } catch (Exception e) {
@@ -176,18 +780,58 @@ public class AuthorBookRepository {
      * @return page
      */
     public int getCurrentPageForUrlAndIncrease(String url) {
+        return claimNextPage(url);
+    }
+
+    /**
+     * Claim the next page of a listing url. A page recorded with addFailedPage is claimed first, the lowest one.
+     * Otherwise the first claim of an url gets page 1, every next one the following page.
+     * On PostgreSQL it is a single INSERT ... ON CONFLICT ... RETURNING statement, so concurrent crawlers,
+     * also in other processes, never get the same page and don't skip one
+     * @param url url
+     * @return claimed page or 0 if it can't be claimed
+     */
+    public int claimNextPage(String url) {
         Session session = sessionFactory.getCurrentSession();
         session.beginTransaction();
 
         try {
-            boolean isFirstCall = innerAddUrl(url);
-            if (!isFirstCall) {
-                setCurrentPageForUrlPrivate(url, getCurrentPageForUrlPrivate(url) + 1);
+            // Only the crawler whose delete removes the row gets a failed page, the others look for the next one
+            Integer failedPage;
+            while ((failedPage = session.createNativeQuery(
+                            "SELECT MIN(page) FROM failed_page WHERE url=?", Integer.class
+                    )
+                    .setParameter(1, url)
+                    .getSingleResult()) != null) {
+                int deleted = session.createNativeQuery("DELETE FROM failed_page WHERE url=? AND page=?", Void.class)
+                        .setParameter(1, url)
+                        .setParameter(2, failedPage)
+                        .executeUpdate();
+                if (deleted == 1) {
+                    return failedPage;
+                }
             }
 
-            return session.createNativeQuery("SELECT page FROM url_page WHERE url=?", Integer.class)
+            if (postgres) {
+                return session.createNativeQuery(
+                                "INSERT INTO url_page (url, page) VALUES (?, 1) "
+                                        + "ON CONFLICT (url) DO UPDATE SET page = url_page.page + 1 RETURNING page",
+                                Integer.class
+                        )
+                        .setParameter(1, url)
+                        .getSingleResult();
+            }
+
+            // Other databases: the update locks the row until the transaction ends
+            int updated = session.createNativeQuery("UPDATE url_page SET page = page + 1 WHERE url=?", Void.class)
                     .setParameter(1, url)
-                    .getSingleResult();
+                    .executeUpdate();
+            if (updated == 0) {
+                session.createNativeQuery("INSERT INTO url_page (url, page) VALUES (?, 1)", Void.class)
+                        .setParameter(1, url)
+                        .executeUpdate();
+            }
+            return getCurrentPageForUrlPrivate(url);
         } catch (Exception e) {
             System.out.println(e.getMessage());
             return 0;
@@ -198,21 +842,63 @@ public class AuthorBookRepository {
     }
 
     /**
-     * Get current page for url
+     * Record a claimed page whose loading failed, so the next claim of its url gets it again
      * @param url url
-     * @return page
+     * @param page page
      */
-    public int getCurrentPageForUrl(String url) {
+    public void addFailedPage(String url, int page) {
         Session session = sessionFactory.getCurrentSession();
         session.beginTransaction();
 
         try {
-            // innerAddUrl(url);
-            return session.createNativeQuery("SELECT page FROM url_page WHERE url=?", Integer.class)
+            if (postgres) {
+                session.createNativeQuery(
+                                "INSERT INTO failed_page (url, page) VALUES (?, ?) ON CONFLICT DO NOTHING", Void.class
+                        )
+                        .setParameter(1, url)
+                        .setParameter(2, page)
+                        .executeUpdate();
+            } else if (session.createNativeQuery(
+                            "SELECT COUNT(*) FROM failed_page WHERE url=? AND page=?", Long.class
+                    )
                     .setParameter(1, url)
-                    .getSingleResult();
+                    .setParameter(2, page)
+                    .getSingleResult() == 0) {
+                // Other databases: a page failing in two crawlers at once fails the second insert
+                session.createNativeQuery("INSERT INTO failed_page (url, page) VALUES (?, ?)", Void.class)
+                        .setParameter(1, url)
+                        .setParameter(2, page)
+                        .executeUpdate();
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Set current page for url only if it still is the expected one
+     * @param url url
+     * @param expectedPage page the url must have
+     * @param page new page
+     * @return true if the page was set
+     */
+    public boolean compareAndSetPage(String url, int expectedPage, int page) {
+        Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
+
+        try {
+            return session.createNativeQuery("UPDATE url_page SET page=? WHERE url=? AND page=?", Void.class)
+                    .setParameter(1, page)
+                    .setParameter(2, url)
+                    .setParameter(3, expectedPage)
+                    .executeUpdate() == 1;
         } catch (Exception e) {
-            return 0;
+            System.out.println(e.getMessage());
+            return false;
         } finally {
             session.getTransaction().commit();
             session.close();
@@ -220,12 +906,13 @@ public class AuthorBookRepository {
     }
 
     /**
-     * Private method to get current page for genre's url
+     * Get current page for url
      * @param url url
      * @return page
      */
-    private int getCurrentPageForUrlPrivate(String url) {
+    public int getCurrentPageForUrl(String url) {
         Session session = sessionFactory.getCurrentSession();
+        session.beginTransaction();
 
         try {
             return session.createNativeQuery("SELECT page FROM url_page WHERE url=?", Integer.class)
@@ -233,24 +920,26 @@ public class AuthorBookRepository {
                     .getSingleResult();
         } catch (Exception e) {
             return 0;
+        } finally {
+            session.getTransaction().commit();
+            session.close();
         }
     }
 
     /**
-     * Private method to set current page for genre's url. Doesn't open a new transaction. Helper method
+     * Private method to get current page for genre's url
      * @param url url
-     * @param page page
+     * @return page
      */
-    private void setCurrentPageForUrlPrivate(String url, int page) {
+    private int getCurrentPageForUrlPrivate(String url) {
         Session session = sessionFactory.getCurrentSession();
 
         try {
-            session.createNativeQuery("UPDATE url_page SET page=? WHERE url=?", Void.class)
-                    .setParameter(1, page)
-                    .setParameter(2, url)
-                    .executeUpdate();
+            return session.createNativeQuery("SELECT page FROM url_page WHERE url=?", Integer.class)
+                    .setParameter(1, url)
+                    .getSingleResult();
         } catch (Exception e) {
-            System.out.println(e.getMessage());
+            return 0;
         }
     }
 
@@ -276,29 +965,6 @@ public class AuthorBookRepository {
         }
     }
 
-    /**
-     * Add an url to database. Does not begin new transaction. Helper method
-     * @param url url
-     * @return true if and only if it's first call of the method otherwise false
-     */
-    private boolean innerAddUrl(String url) {
-        Session session = sessionFactory.getCurrentSession();
-
-        try {
-            session.createNativeQuery(
-                    "SELECT url FROM url_page WHERE url=?", String.class)
-                    .setParameter(1, url)
-                    .getSingleResult();
-            return false;
-        } catch (Exception e) {
-            System.out.printf("Url %s does not exist in database. Adding...\n", url);
-            session.createNativeQuery("INSERT INTO url_page VALUES(?, 1)", Void.class)
-                    .setParameter(1, url)
-                    .executeUpdate();
-            return true;
-        }
-    }
-
     /**
      * Add url to database if it does not exist there yet
      * @param url url
@@ -309,14 +975,12 @@ public class AuthorBookRepository {
 
         try {
             session.createNativeQuery(
-                            "SELECT url FROM url_page WHERE url=?", String.class)
-                    .setParameter(1, url)
-                    .getSingleResult();
-        } catch (Exception e) {
-            System.out.printf("Url %s does not exist in database. Adding...\n", url);
-            session.createNativeQuery("INSERT INTO url_page VALUES(?, 1)", Void.class)
+                            "INSERT INTO url_page (url, page) VALUES (?, 1) ON CONFLICT DO NOTHING", Void.class
+                    )
                     .setParameter(1, url)
                     .executeUpdate();
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
         } finally {
             session.getTransaction().commit();
             session.close();
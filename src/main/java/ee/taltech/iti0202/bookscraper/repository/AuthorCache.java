@@ -0,0 +1,100 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import ee.taltech.iti0202.bookscraper.models.Author;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process map of author names to author ids.
+ * Only one thread looks up or creates a missing author, others with the same name wait for its result,
+ * so concurrently processed books of one author don't create duplicate authors
+ */
+public class AuthorCache {
+
+    private final AuthorBookRepository repository;
+    private final Map<String, CompletableFuture<Integer>> authorIds = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     * @param repository repository
+     */
+    public AuthorCache(AuthorBookRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Load ids of all stored authors
+     * @return amount of cached authors
+     */
+    public int warmUp() {
+        for (Author author : repository.getAllAuthors()) {
+            authorIds.putIfAbsent(
+                    key(author.getFirstName(), author.getLastName()),
+                    CompletableFuture.completedFuture(author.getId())
+            );
+        }
+        return authorIds.size();
+    }
+
+    /**
+     * Get id of an author, creating the author if it doesn't exist
+     * @param firstName first name
+     * @param lastName last name
+     * @return author's id
+     */
+    public int getAuthorId(String firstName, String lastName) {
+        String key = key(firstName, lastName);
+        CompletableFuture<Integer> authorId = authorIds.get(key);
+        if (authorId == null) {
+            CompletableFuture<Integer> created = new CompletableFuture<>();
+            authorId = authorIds.putIfAbsent(key, created);
+            if (authorId == null) {
+                try {
+                    created.complete(findOrCreateAuthor(firstName, lastName));
+                } catch (RuntimeException e) {
+                    // Let the next caller try again
+                    authorIds.remove(key, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+                authorId = created;
+            }
+        }
+
+        try {
+            return authorId.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Get amount of cached authors
+     * @return amount of authors
+     */
+    public int size() {
+        return authorIds.size();
+    }
+
+    private int findOrCreateAuthor(String firstName, String lastName) {
+        return repository.getAuthorByNameAndSurname(firstName, lastName)
+                .map(Author::getId)
+                .orElseGet(() -> {
+                    Author author = Author.builder()
+                            .withFirstName(firstName)
+                            .withLastName(lastName)
+                            .withBooks(new ArrayList<>())
+                            .build();
+                    repository.addAuthor(author);
+                    return author.getId();
+                });
+    }
+
+    private static String key(String firstName, String lastName) {
+        return firstName + "\u0000" + lastName;
+    }
+}
@@ -0,0 +1,118 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import ee.taltech.iti0202.bookscraper.models.Book;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of books by url. The least recently used book is evicted when the cache is full.
+ * The cache keeps its own copy of every book and hands out copies, so a caller changing its book
+ * can't change what other callers get
+ */
+public class BookCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final int maximumSize;
+    private final Map<String, Book> books;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor
+     * @param maximumSize maximum amount of cached books, 0 disables the cache
+     */
+    public BookCache(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum size must not be negative, got " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.books = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Book> eldest) {
+                return size() > BookCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Get a cached book
+     * @param url url
+     * @return copy of the book or null if it isn't cached
+     */
+    public Book get(String url) {
+        Book book;
+        synchronized (books) {
+            book = books.get(url);
+        }
+        if (book == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return book.copy();
+    }
+
+    /**
+     * Cache a book after it was successfully stored, replacing the cached book with the same url
+     * @param book book with url
+     */
+    public void put(Book book) {
+        if (maximumSize == 0 || book.getUrl() == null) {
+            return;
+        }
+        Book snapshot = book.copy();
+        synchronized (books) {
+            books.put(snapshot.getUrl(), snapshot);
+        }
+    }
+
+    /**
+     * Remove all cached books, statistics are kept
+     */
+    public void clear() {
+        synchronized (books) {
+            books.clear();
+        }
+    }
+
+    /**
+     * Get amount of cached books
+     * @return amount of books
+     */
+    public int size() {
+        synchronized (books) {
+            return books.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get share of lookups answered from the cache
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Book cache: %d/%d books, %d hits, %d misses, %.1f%% hit rate",
+                size(), maximumSize, getHits(), getMisses(), getHitRate() * 100);
+    }
+}
@@ -0,0 +1,105 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the JDBC connection pool: connections in use, idle connections, threads waiting for a connection
+ * and time spent waiting. Used to size the pool to the concurrency of a crawl
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitions.increment();
+                waitNanos.add(elapsedAcquiredNanos);
+                maxWaitNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    public int getActiveConnections() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getActiveConnections() : 0;
+    }
+
+    public int getIdleConnections() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getIdleConnections() : 0;
+    }
+
+    public int getTotalConnections() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getTotalConnections() : 0;
+    }
+
+    public int getMaxConnections() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getMaxConnections() : 0;
+    }
+
+    /**
+     * Get amount of threads waiting for a connection right now
+     * @return amount of threads
+     */
+    public int getPendingThreads() {
+        PoolStats stats = poolStats;
+        return stats != null ? stats.getPendingThreads() : 0;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * Get amount of connection requests which gave up waiting
+     * @return amount of timeouts
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Get average time a session waited for a connection
+     * @return average wait time
+     */
+    public Duration getAverageWaitTime() {
+        long count = getAcquisitions();
+        return Duration.ofNanos(count == 0 ? 0 : waitNanos.sum() / count);
+    }
+
+    public Duration getMaxWaitTime() {
+        return Duration.ofNanos(maxWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Connection pool: %d active, %d idle, %d/%d connections, %d waiting, "
+                        + "%d acquisitions, %d us average wait, %d us max wait, %d timeouts",
+                getActiveConnections(), getIdleConnections(), getTotalConnections(), getMaxConnections(),
+                getPendingThreads(), getAcquisitions(), getAverageWaitTime().toNanos() / 1000,
+                getMaxWaitTime().toNanos() / 1000, getTimeouts()
+        );
+    }
+}
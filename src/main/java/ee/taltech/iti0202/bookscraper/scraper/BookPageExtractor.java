@@ -0,0 +1,15 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.models.Book;
+
+public interface BookPageExtractor {
+
+    /**
+     * Create a book from its product page.
+     * Returned book has a new (not persisted) author built from the name shown on the page
+     * @param html product page HTML
+     * @param url product page url
+     * @return book or null if the page has no product section
+     */
+    Book extract(String html, String url);
+}
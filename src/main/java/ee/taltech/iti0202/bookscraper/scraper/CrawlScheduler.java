@@ -0,0 +1,241 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.fetcher.FetchException;
+import ee.taltech.iti0202.bookscraper.models.BookGenre;
+import ee.taltech.iti0202.bookscraper.models.BookGenreUrlParser;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Crawls several genres at once.
+ * Every genre has its own queue of book urls, filled by a listing page walker of that genre.
+ * A fixed amount of workers shares the concurrency budget and takes batches of books from the queues
+ * in round-robin order, so a big genre can't starve the small ones.
+ * Books recorded in the scraper's checkpoint for their genre are skipped, listing pages are always walked again
+ */
+public class CrawlScheduler {
+
+    private static final int BATCH_SIZE = 8;
+
+    private final Scraper scraper;
+    private final int maxConcurrency;
+
+    /**
+     * State of one call of crawl, so concurrent crawls of one scheduler don't share their queues
+     */
+    private static final class Crawl {
+        private final Object lock = new Object();
+        private final List<GenreQueue> queues = new ArrayList<>();
+        private int cursor;
+    }
+
+    /**
+     * Work queue of one genre
+     */
+    private static final class GenreQueue {
+        private final BookGenre genre;
+        private final Queue<String> urls = new ArrayDeque<>();
+        private boolean listingDone;
+        private boolean listingFailed;
+        private int inFlight;
+        private int pages;
+        private int books;
+        private int failures;
+
+        private GenreQueue(BookGenre genre) {
+            this.genre = genre;
+        }
+
+        private boolean isDone() {
+            return listingDone && urls.isEmpty() && inFlight == 0;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param scraper scraper
+     * @param maxConcurrency amount of books processed at the same time over all genres
+     */
+    public CrawlScheduler(Scraper scraper, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be positive, got " + maxConcurrency);
+        }
+        this.scraper = scraper;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Crawl every known genre
+     * @param onGenreDone called once for every genre when all its books are processed
+     * @return reports of all genres
+     */
+    public Map<BookGenre, GenreCrawlReport> crawlAll(Consumer<GenreCrawlReport> onGenreDone) {
+        return crawl(Arrays.stream(BookGenre.values())
+                .filter(genre -> !BookGenreUrlParser.getUrlByGenre(genre).isEmpty())
+                .toList(), onGenreDone);
+    }
+
+    /**
+     * Crawl provided genres
+     * @param genres genres
+     * @param onGenreDone called once for every genre when all its books are processed
+     * @return reports of all genres
+     */
+    public Map<BookGenre, GenreCrawlReport> crawl(Collection<BookGenre> genres,
+                                                  Consumer<GenreCrawlReport> onGenreDone) {
+        long start = System.nanoTime();
+        Map<BookGenre, GenreCrawlReport> reports = new EnumMap<>(BookGenre.class);
+        Consumer<GenreQueue> finish = queue -> {
+            GenreCrawlReport report = new GenreCrawlReport(queue.genre, queue.pages, queue.books,
+                    queue.failures, Duration.ofNanos(System.nanoTime() - start), !queue.listingFailed);
+            synchronized (reports) {
+                reports.put(queue.genre, report);
+            }
+            onGenreDone.accept(report);
+        };
+
+        Crawl crawl = new Crawl();
+        genres.forEach(genre -> crawl.queues.add(new GenreQueue(genre)));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (GenreQueue queue : crawl.queues) {
+                executor.submit(() -> walkListing(crawl, queue, finish));
+            }
+            for (int i = 0; i < maxConcurrency; i++) {
+                executor.submit(() -> work(crawl, finish));
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Walk listing pages of a genre and put their book urls into its queue.
+     * Next page is loaded only when the queue has no more than a batch for every worker,
+     * so the walker stays about one page ahead.
+     * However the walk ends, the listing is marked done, and incomplete unless its last page was reached,
+     * so the workers never wait for a walker that is gone
+     * @param crawl crawl
+     * @param queue genre queue
+     * @param finish called when genre is done
+     */
+    private void walkListing(Crawl crawl, GenreQueue queue, Consumer<GenreQueue> finish) {
+        String pageUrl = BookGenreUrlParser.getUrlByGenre(queue.genre);
+        boolean reachedEnd = false;
+        boolean done;
+
+        try {
+            for (int page = 1; ; page++) {
+                String listingUrl = pageUrl + "?page=" + page;
+                List<String> urls;
+                try {
+                    urls = scraper.getBookUrlsFromListingPage(listingUrl);
+                } catch (FetchException e) {
+                    System.out.printf("Error while loading url %s: %s\n", listingUrl, e.getMessage());
+                    break;
+                }
+                if (urls == null) {
+                    reachedEnd = true;
+                    break;
+                }
+
+                synchronized (crawl.lock) {
+                    queue.pages++;
+                    for (String url : urls) {
+                        if (!scraper.isBookDone(queue.genre, url)) {
+                            queue.urls.add(url);
+                        }
+                    }
+                    crawl.lock.notifyAll();
+
+                    while (queue.urls.size() > maxConcurrency * BATCH_SIZE) {
+                        crawl.lock.wait();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.out.printf("Error while walking listing of genre %s: %s\n", queue.genre, e.getMessage());
+        } finally {
+            synchronized (crawl.lock) {
+                queue.listingDone = true;
+                queue.listingFailed = !reachedEnd;
+                done = queue.isDone();
+                crawl.lock.notifyAll();
+            }
+        }
+
+        if (done) {
+            finish.accept(queue);
+        }
+    }
+
+    /**
+     * Take batches of books from the genre queues in round-robin order until every genre is done.
+     * Every batch is looked up and saved with one query each, like the books of a listing page
+     * @param crawl crawl
+     * @param finish called when genre is done
+     */
+    private void work(Crawl crawl, Consumer<GenreQueue> finish) {
+        while (true) {
+            GenreQueue queue;
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+
+            synchronized (crawl.lock) {
+                queue = null;
+                while (batch.isEmpty()) {
+                    if (crawl.queues.stream().allMatch(GenreQueue::isDone)) {
+                        return;
+                    }
+                    for (int i = 0; i < crawl.queues.size() && batch.isEmpty(); i++) {
+                        queue = crawl.queues.get((crawl.cursor + i) % crawl.queues.size());
+                        while (batch.size() < BATCH_SIZE && !queue.urls.isEmpty()) {
+                            batch.add(queue.urls.poll());
+                        }
+                    }
+                    if (batch.isEmpty()) {
+                        try {
+                            crawl.lock.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+                crawl.cursor = (crawl.queues.indexOf(queue) + 1) % crawl.queues.size();
+                queue.inFlight += batch.size();
+                crawl.lock.notifyAll();
+            }
+
+            int processed = 0;
+            try {
+                processed = scraper.crawlBooks(queue.genre, batch).size();
+            } catch (RuntimeException e) {
+                System.out.printf("Error while processing books of genre %s: %s\n", queue.genre, e.getMessage());
+            }
+
+            boolean done;
+            synchronized (crawl.lock) {
+                queue.inFlight -= batch.size();
+                queue.books += processed;
+                queue.failures += batch.size() - processed;
+                done = queue.isDone();
+                crawl.lock.notifyAll();
+            }
+            if (done) {
+                finish.accept(queue);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.models.Author;
+import ee.taltech.iti0202.bookscraper.models.Book;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.Arrays;
+
+/**
+ * Extractor which parses the whole product page into a DOM and then queries the product section
+ */
+public class DomBookPageExtractor implements BookPageExtractor {
+
+    @Override
+    public Book extract(String html, String url) {
+        Element bookSection = getBookMainInfo(Jsoup.parse(html, url));
+        if (bookSection == null) {
+            return null;
+        }
+
+        Book book = createBookFromHtmlElement(bookSection);
+        book.setUrl(url);
+
+        Element authorNameElement = bookSection.getElementById("meta-author");
+        book.setAuthor(parseAuthor(authorNameElement != null ? authorNameElement.text() : ""));
+        return book;
+    }
+
+    /**
+     * Get book main info as HTML from a document
+     * @param bookHtml product page document
+     * @return element or null if there is no product section
+     */
+    private Element getBookMainInfo(Document bookHtml) {
+        return bookHtml.getElementsByAttributeValue("aria-label", "Product Section").first();
+    }
+
+    /**
+     * Helper method to create book instance from html
+     * @param bookSection html code
+     * @return new book
+     */
+    private Book createBookFromHtmlElement(Element bookSection) {
+        Elements title = bookSection.getElementsByClass("styles_heading__title__Xym7A");
+        Element publisher = bookSection.getElementById("meta-publisher");
+        Element format = bookSection.getElementById("meta-format");
+        Element language = bookSection.getElementById("meta-language");
+        Element publishedAt = bookSection.getElementById("meta-published_at");
+        Element pages = bookSection.getElementById("meta-pages");
+        Elements price = bookSection.getElementsByClass("styles_product-price-value__Ai9c8");
+        Element genre = bookSection.selectFirst(".styles_breadcrumbs__NarXt ol li:nth-of-type(4)");
+
+        return Book.builder()
+                .withTitle(!title.isEmpty() ? title.getFirst().text() : "")
+                .withFormat(format != null ? format.text() : "")
+                .withLanguage(language != null ? language.text() : "")
+                .withPages(pages != null ? Integer.parseInt(pages.text()) : -1)
+                .withPrice(!price.isEmpty() ? SinglePassBookPageExtractor.parsePrice(price.text()) : -1)
+                .withPublisher(publisher != null ? publisher.text() : "")
+                .withPublishingYear(publishedAt != null ? publishedAt.text() : "")
+                .withGenre(genre != null ? genre.text() : "")
+                .build();
+    }
+
+    /**
+     * Helper method to build an author from the name shown on the page.
+     * First word is the first name, the rest is the last name
+     * @param fullName author's name from the page
+     * @return new author
+     */
+    static Author parseAuthor(String fullName) {
+        String[] authorName = fullName.split("[, ]");
+
+        String firstName, lastName;
+        if (authorName.length == 1) {
+            firstName = authorName[0].trim();
+            lastName = "";
+        } else {
+            firstName = authorName[0].trim();
+            lastName = String.join(" ",
+                    Arrays.stream(authorName).toList().subList(1, authorName.length)
+            ).trim();
+        }
+
+        return Author.builder()
+                .withFirstName(firstName)
+                .withLastName(lastName)
+                .build();
+    }
+}
@@ -0,0 +1,5 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+public enum ExtractionMode {
+    DOM, SINGLE_PASS, STREAMING
+}
@@ -0,0 +1,25 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.models.BookGenre;
+
+import java.time.Duration;
+
+/**
+ * Result of crawling one genre
+ * @param genre genre
+ * @param pages amount of listing pages with books
+ * @param books amount of books processed successfully
+ * @param failures amount of books which could not be processed
+ * @param duration time from the start of the crawl until the genre was done
+ * @param complete true if listing pages were walked until their end, false if a listing page could not be loaded
+ */
+public record GenreCrawlReport(BookGenre genre, int pages, int books, int failures, Duration duration,
+                               boolean complete) {
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d books (%d failed) from %d pages in %d s%s",
+                genre, books, failures, pages, duration.toSeconds(),
+                complete ? "" : ", stopped at a listing page which could not be loaded");
+    }
+}
@@ -1,5 +1,5 @@
 package ee.taltech.iti0202.bookscraper.scraper;
 
 public enum ProcessingType {
-    SYNCHRONIZED, PARALLEL
+    SYNCHRONIZED, PARALLEL, VIRTUAL_THREADS, SHALLOW
 }
@@ -1,230 +1,484 @@
 package ee.taltech.iti0202.bookscraper.scraper;
 
+import ee.taltech.iti0202.bookscraper.fetcher.FetchException;
+import ee.taltech.iti0202.bookscraper.fetcher.HttpClientPageFetcher;
+import ee.taltech.iti0202.bookscraper.fetcher.PageFetcher;
+import ee.taltech.iti0202.bookscraper.fetcher.RateLimitedPageFetcher;
+import ee.taltech.iti0202.bookscraper.frontier.CrawlCheckpoint;
+import ee.taltech.iti0202.bookscraper.frontier.UrlFrontier;
 import ee.taltech.iti0202.bookscraper.models.Author;
 import ee.taltech.iti0202.bookscraper.models.Book;
 import ee.taltech.iti0202.bookscraper.models.BookGenre;
+import ee.taltech.iti0202.bookscraper.models.BookGenreUrlParser;
+import ee.taltech.iti0202.bookscraper.models.BookSummary;
 import ee.taltech.iti0202.bookscraper.repository.AuthorBookRepository;
+import ee.taltech.iti0202.bookscraper.repository.AuthorCache;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
-import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Objects;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class Scraper {
 
+    public static final int DEFAULT_MAX_CONCURRENCY = 16;
+    public static final int BOOK_PAGE_SIZE = 100;
+    private static final int NOT_FOUND = 404;
+
     private final AuthorBookRepository repository;
+    private final AuthorCache authorCache;
+    private final PageFetcher fetcher;
+    private final int maxConcurrency;
+    private final BookPageExtractor domExtractor = new DomBookPageExtractor();
+    private final BookPageExtractor singlePassExtractor = new SinglePassBookPageExtractor();
+    private final BookPageExtractor streamingExtractor = new StreamingBookPageExtractor();
+    private volatile ExtractionMode extractionMode = ExtractionMode.SINGLE_PASS;
+    private volatile Duration refreshTtl;
+    private volatile UrlFrontier frontier;
+    private volatile CrawlCheckpoint checkpoint;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
 
     /**
      * Constructor
      * @param repository repository
      */
     public Scraper(AuthorBookRepository repository) {
-        this.repository = repository;
+        this(repository, new RateLimitedPageFetcher(new HttpClientPageFetcher()));
+    }
+
+    /**
+     * Constructor
+     * @param repository repository
+     * @param fetcher fetcher used to download pages
+     */
+    public Scraper(AuthorBookRepository repository, PageFetcher fetcher) {
+        this(repository, fetcher, DEFAULT_MAX_CONCURRENCY);
+    }
 
+    /**
+     * Constructor
+     * @param repository repository
+     * @param fetcher fetcher used to download pages
+     * @param maxConcurrency maximum amount of books processed at the same time with virtual threads
+     */
+    public Scraper(AuthorBookRepository repository, PageFetcher fetcher, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be positive, got " + maxConcurrency);
+        }
+        this.repository = repository;
+        this.authorCache = new AuthorCache(repository);
+        this.fetcher = fetcher;
+        this.maxConcurrency = maxConcurrency;
     }
 
     /**
      * Get document (HTML) of provided url
      * @param url url
      * @return document
+     * @throws FetchException if the page could not be fetched
      */
-    private Document getDocumentFromUrl(String url) {
-        try {
-            return Jsoup.parse(new URI(url).toURL().openStream(), "UTF-8", url);
-        } catch (Exception e) {
+    private Document getDocumentFromUrl(String url) throws FetchException {
+        return Jsoup.parse(fetcher.fetch(url).body(), url);
+    }
+
+    /**
+     * Create book instance from it's url. A book stored meanwhile under the same url is updated instead
+     * @param bookUrl url
+     * @return book instance
+     */
+    private Book createBookFromUrl(String bookUrl) {
+
+        // If book wasn't found in database
+        Book realBook = loadBookFromProductPage(bookUrl);
+        if (realBook == null) {
             return null;
         }
+
+        Author author = realBook.getAuthor();
+        author.setId(authorCache.getAuthorId(author.getFirstName(), author.getLastName()));
+        repository.upsertBook(realBook);
+        rememberUrl(bookUrl);
+        return realBook;
     }
 
     /**
-     * Get book main info as HTML from a document
-     * @param bookHtml document got with getDocumentFromUrl
-     * @return element
+     * Load missing details of a partial book from its product page. The partial book itself is left untouched
+     * @param book partial book from database
+     * @return new complete book with the id of the partial one or the partial book if the page can't be loaded
      */
-    private Element getBookMainInfo(Document bookHtml) {
-        return bookHtml.getElementsByAttributeValue("aria-label", "Product Section").getFirst();
+    private Book enrichBook(Book book) {
+        Book details = loadBookFromProductPage(book.getUrl());
+        if (details == null) {
+            return book;
+        }
+
+        details.setId(book.getId());
+        saveBookWithAuthor(details, details.getAuthor().getFirstName(), details.getAuthor().getLastName());
+        return details;
     }
 
     /**
-     * Helper method to parse book price
-     * @param string string price
-     * @return double price
+     * Reload a stale book from its product page on a background virtual thread.
+     * Only one refresh per url runs at a time
+     * @param book stale book from database
      */
-    private double parseDouble(String string) {
-        String pattern = "(\\d+)(,\\d+)?";
-        Pattern p = Pattern.compile(pattern);
-        Matcher m = p.matcher(string);
-
-        if (m.find()) {
-            return Double.parseDouble(m.group(0).replace(",", "."));
+    private void refreshBookInBackground(Book book) {
+        if (!refreshing.add(book.getUrl())) {
+            return;
         }
-        return -1;
+        Thread.ofVirtual().name("refresh-" + book.getId()).start(() -> {
+            try {
+                refreshBook(book);
+            } finally {
+                refreshing.remove(book.getUrl());
+            }
+        });
     }
 
     /**
-     * Helper method to create book instance from html
-     * @param bookSection html code
-     * @return new book
+     * Reload a book from its product page and replace it in database. The book itself is left untouched,
+     * as it may already be in use by other callers
+     * @param book book from database
+     * @return new book with the id and author of the stored one or the stored book if the page can't be loaded
      */
-    private Book createBookFromHtmlElement(Element bookSection) {
-        Elements title = bookSection.getElementsByClass("styles_heading__title__Xym7A");
-        Element publisher = bookSection.getElementById("meta-publisher");
-        Element format = bookSection.getElementById("meta-format");
-        Element language = bookSection.getElementById("meta-language");
-        Element publishedAt = bookSection.getElementById("meta-published_at");
-        Element pages = bookSection.getElementById("meta-pages");
-        Elements price = bookSection.getElementsByClass("styles_product-price-value__Ai9c8");
-        Element genre = bookSection.selectFirst(".styles_breadcrumbs__NarXt ol li:nth-of-type(4)");
+    private Book refreshBook(Book book) {
+        Book details = loadBookFromProductPage(book.getUrl());
+        if (details == null) {
+            return book;
+        }
 
-        return Book.builder()
-                .withTitle(!title.isEmpty() ? title.getFirst().text() : "")
-                .withFormat(format != null ? format.text() : "")
-                .withLanguage(language != null ? language.text() : "")
-                .withPages(pages != null ? Integer.parseInt(pages.text()) : -1)
-                .withPrice(!price.isEmpty() ? parseDouble(price.text()) : -1)
-                .withPublisher(publisher != null ? publisher.text() : "")
-                .withPublishingYear(publishedAt != null ? publishedAt.text() : "")
-                .withGenre(genre != null ? genre.text() : "")
-                .build();
+        details.setId(book.getId());
+        if (book.getAuthor() != null) {
+            details.setAuthor(book.getAuthor());
+        } else {
+            Author author = details.getAuthor();
+            author.setId(authorCache.getAuthorId(author.getFirstName(), author.getLastName()));
+        }
+        repository.updateBook(details);
+        return details;
     }
 
     /**
-     * Create book instance from it's url
+     * Fetch product page and build a book with a not yet persisted author
      * @param bookUrl url
-     * @return book instance
+     * @return book or null if page can't be loaded or has no product section
      */
-    private Book createBookFromUrl(String bookUrl) {
-
-        // If book wasn't found in database
-        Document document = getDocumentFromUrl(bookUrl);
+    private Book loadBookFromProductPage(String bookUrl) {
+        String html;
+        try {
+            html = fetcher.fetch(bookUrl).body();
+        } catch (FetchException e) {
+            System.out.printf("Error while loading book: %s\n", e.getMessage());
+            return null;
+        }
 
-        if (document == null) {
+        Book book = getExtractor().extract(html, bookUrl);
+        if (book == null) {
+            System.out.printf("Url %s doesn't have a product section\n", bookUrl);
             return null;
         }
+        book.setLastScrapedAt(Instant.now());
+        return book;
+    }
 
-        Element bookSection = getBookMainInfo(document);
+    /**
+     * Save a book, creating its author if needed
+     * @param book book
+     * @param firstName author's first name
+     * @param lastName author's last name
+     */
+    private void saveBookWithAuthor(Book book, String firstName, String lastName) {
+        repository.addBookToAuthor(authorCache.getAuthorId(firstName, lastName), book);
+    }
 
-        // Build a book
+    /**
+     * Load ids of all stored authors, so saving a book of a known author doesn't query the author
+     * @return amount of cached authors
+     */
+    public int warmUpAuthorCache() {
+        return authorCache.warmUp();
+    }
 
-        Book realBook = createBookFromHtmlElement(bookSection);
-        realBook.setUrl(bookUrl);
+    /**
+     * Set how long a book from database stays fresh. Older books are served and reloaded in the background
+     * @param refreshTtl time to live or null to never reload books
+     */
+    public void setRefreshTtl(Duration refreshTtl) {
+        this.refreshTtl = refreshTtl;
+    }
 
-        // Build an author
+    /**
+     * Get extractor of the current extraction mode
+     * @return extractor
+     */
+    private BookPageExtractor getExtractor() {
+        return switch (extractionMode) {
+            case DOM -> domExtractor;
+            case SINGLE_PASS -> singlePassExtractor;
+            case STREAMING -> streamingExtractor;
+        };
+    }
 
-        Element authorNameElement = bookSection.getElementById("meta-author");
-        String[] authorName;
-        if (authorNameElement != null) {
-            authorName = authorNameElement.text().split("[, ]");
-        } else {
-            authorName = new String[]{""};
+    /**
+     * Set the way product pages are parsed
+     * @param extractionMode DOM (separate query for every field), single pass (one walk over the product section)
+     *                       or streaming (parsing stops once the book is read)
+     */
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    /**
+     * Find a stored book. Urls the frontier has never seen are not looked up in database
+     * @param url url
+     * @return optional of book
+     */
+    private Optional<Book> findBook(String url) {
+        UrlFrontier currentFrontier = frontier;
+        if (currentFrontier != null && !currentFrontier.mightBeKnown(url)) {
+            return Optional.empty();
         }
+        return repository.getBookByUrl(url);
+    }
 
-        String firstName, lastName;
-        if (authorName.length == 1) {
-            firstName = authorName[0].trim();
-            lastName = "";
-        } else {
-            firstName = authorName[0].trim();
-            lastName = String.join(" ",
-                    Arrays.stream(authorName).toList().subList(1, authorName.length)
-            ).trim();
+    /**
+     * Find stored books of a listing page with one query. Urls the frontier has never seen are not looked up
+     * @param urls product urls
+     * @return stored books by url
+     * @throws RuntimeException if database can't be queried, the page must not be processed as all new books
+     */
+    private Map<String, Book> findBooks(List<String> urls) {
+        UrlFrontier currentFrontier = frontier;
+        List<String> candidates = currentFrontier == null
+                ? urls
+                : urls.stream().filter(currentFrontier::mightBeKnown).toList();
+        if (candidates.isEmpty()) {
+            return Map.of();
         }
 
-        Optional<Author> authorFromDB = repository.getAuthorByNameAndSurname(firstName, lastName);
+        Map<String, Book> books = new HashMap<>();
+        for (Book book : repository.getBooksByUrls(candidates)) {
+            books.putIfAbsent(book.getUrl(), book);
+        }
+        return books;
+    }
 
-        if (authorFromDB.isPresent()) {
-            repository.addBookToAuthor(authorFromDB.get().getId(), realBook);
-        } else {
-            Author newAuthor = Author.builder()
-                    .withFirstName(firstName)
-                    .withLastName(lastName)
-                    .withBooks(new ArrayList<>())
-                    .build();
-            repository.addAuthor(newAuthor);
-            repository.addBookToAuthor(newAuthor.getId(), realBook);
+    /**
+     * Remember url of a stored book in the frontier
+     * @param url url
+     */
+    private void rememberUrl(String url) {
+        UrlFrontier currentFrontier = frontier;
+        if (currentFrontier != null) {
+            currentFrontier.add(url);
         }
-        return realBook;
+    }
+
+    /**
+     * Set frontier of stored book urls consulted before database lookups.
+     * It must already contain urls of all books stored in database
+     * @param frontier frontier or null to always ask database
+     */
+    public void setFrontier(UrlFrontier frontier) {
+        this.frontier = frontier;
     }
 
     /**
      * Get book by url
-     * A book from database will be returned, if exists
+     * A book from database will be returned, if exists. Partial book gets its missing details first,
+     * a book older than refresh TTL is returned as is and reloaded in the background
      * Otherwise the book will be created with createBookFromUrl method
      * @param url url
      * @return book instance
      */
     public Book getBookByUrl(String url) {
-        Optional<Book> book = repository.getBookByUrl(url);
+        Optional<Book> book = findBook(url);
+        return book.isPresent() ? getStoredBook(book.get()) : createBookFromUrl(url);
+    }
+
+    /**
+     * Prepare a book taken from database. Partial book gets its missing details,
+     * a book older than refresh TTL is reloaded in the background
+     * @param book book from database
+     * @return book
+     */
+    private Book getStoredBook(Book book) {
+        System.out.println("Book taken from database");
+        if (book.isPartial()) {
+            return enrichBook(book);
+        }
+        Duration ttl = refreshTtl;
+        if (ttl != null && book.isStale(ttl)) {
+            refreshBookInBackground(book);
+        }
+        return book;
+    }
+
+    /**
+     * Get a batch of books of a genre crawl, like the books of a listing page.
+     * Stored books are found with one query and new books are saved together in one transaction.
+     * Books are loaded one after another, the caller runs batches concurrently.
+     * Successfully processed books are recorded in the checkpoint
+     * @param genre crawled genre
+     * @param urls product urls
+     * @return processed books, books that failed are left out
+     * @throws RuntimeException if database can't be queried for stored books
+     */
+    List<Book> crawlBooks(BookGenre genre, List<String> urls) {
+        Map<String, Book> storedBooks = findBooks(urls);
+        List<Book> books = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            Book storedBook = storedBooks.get(url);
+            try {
+                Book book = storedBook != null ? getStoredBook(storedBook) : loadBookFromProductPage(url);
+                if (book != null) {
+                    books.add(book);
+                }
+            } catch (RuntimeException e) {
+                System.out.printf("Error while processing book %s: %s\n", url, e.getMessage());
+            }
+        }
+
+        saveNewBooks(books);
+        books.forEach(book -> markBookDone(genre, book.getUrl()));
+        return books;
+    }
 
-        if (book.isPresent()) {
-            System.out.println("Book taken from database");
-            return book.get();
+    /**
+     * Record a processed book of a genre crawl in the checkpoint
+     * @param genre crawled genre
+     * @param url url
+     */
+    private void markBookDone(BookGenre genre, String url) {
+        CrawlCheckpoint currentCheckpoint = checkpoint;
+        if (currentCheckpoint != null) {
+            currentCheckpoint.markBookDone(genre.name(), url);
         }
+    }
 
-        return createBookFromUrl(url);
+    /**
+     * Check whether a book was processed by an earlier interrupted crawl of the genre
+     * @param genre crawled genre
+     * @param url url
+     * @return true if book is recorded in the checkpoint
+     */
+    boolean isBookDone(BookGenre genre, String url) {
+        CrawlCheckpoint currentCheckpoint = checkpoint;
+        return currentCheckpoint != null && currentCheckpoint.isBookDone(genre.name(), url);
     }
 
     /**
-     * Get books list by genre
+     * Set checkpoint log used by crawls to resume after an interruption. Records are kept per crawled genre
+     * @param checkpoint checkpoint or null to always crawl from the start
+     */
+    public void setCheckpoint(CrawlCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Pass books of a genre from database to a consumer, reading them in keyset pages of BOOK_PAGE_SIZE books,
+     * so memory use doesn't grow with the table and no cursor is held open while the consumer runs
      * @param bookGenre genre
-     * @return list of books
+     * @param consumer consumer of books
+     * @return amount of books
      */
-    public List<Book> getBooksByGenre(BookGenre bookGenre) {
-        return repository.getBooksByGenre(bookGenre);
+    public int forEachBookByGenre(BookGenre bookGenre, Consumer<Book> consumer) {
+        int count = 0;
+        List<Book> page = repository.getBooksByGenreAfter(bookGenre, 0, BOOK_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(consumer);
+            count += page.size();
+            page = page.size() < BOOK_PAGE_SIZE ? List.of()
+                    : repository.getBooksByGenreAfter(bookGenre, page.getLast().getId(), BOOK_PAGE_SIZE);
+        }
+        return count;
+    }
+
+    /**
+     * Stream books of a genre from database without loading all of them. The stream must be closed
+     * @param bookGenre genre
+     * @return stream of books
+     */
+    public Stream<Book> streamBooksByGenre(BookGenre bookGenre) {
+        return repository.streamBooksByGenre(bookGenre);
+    }
+
+    /**
+     * Stream summaries of books of a genre from database for showing them. The stream must be closed
+     * @param bookGenre genre
+     * @return stream of summaries
+     */
+    public Stream<BookSummary> streamBookSummariesByGenre(BookGenre bookGenre) {
+        return repository.streamBookSummariesByGenre(bookGenre);
     }
 
     /**
      * Get list of books from a provided url.
      * Url must be like 'https://www.apollo.ee/en/raamatud/ingliskeelsed-raamatud/{genre}'
-     * Increases page with every successful method call
+     * Page 0 claims the next page of the url, every successful call moves to the following one.
+     * A claimed page that fails to load or process is recorded as failed, so a later claim gets it again
      * @param pageUrl url
      * @param page page number
      * @param size books amount to get
-     * @param processingType either synchronized (slower) or parallel (faster)
+     * @param processingType synchronized (slower), parallel (faster), virtual threads (fastest, I/O bound)
+     *                       or shallow (listing cards only, product pages are not loaded)
      * @return list of books
      */
     public List<Book> getSingleBookPage(String pageUrl, int page, int size, ProcessingType processingType) {
-        int oldPageValue = repository.getCurrentPageForUrl(pageUrl);
-        int currentPage = page == 0 ? repository.getCurrentPageForUrlAndIncrease(pageUrl) : page;
+        int currentPage = page == 0 ? repository.claimNextPage(pageUrl) : page;
+        if (currentPage <= 0) {
+            System.out.printf("Can't claim next page of url %s\n", pageUrl);
+            return null;
+        }
+        boolean claimed = page == 0;
         String finalUrl = pageUrl + "?page=" + currentPage;
 
         // If provided page is not next to the existing one in database, don't increase current page
         if (page != 0) {
             repository.addUrl(pageUrl);
-            if (page - repository.getCurrentPageForUrl(pageUrl) == 1) {
-                repository.setCurrentPageForUrl(pageUrl, page);
-            }
+            int storedPage = repository.getCurrentPageForUrl(pageUrl);
+            claimed = page - storedPage == 1 && repository.compareAndSetPage(pageUrl, storedPage, page);
         }
 
-        Document pageDocument = getDocumentFromUrl(finalUrl);
         System.out.printf("Loading %d page\n", currentPage);
-        if (pageDocument == null) {
-            System.out.printf("Error while loading url %s", finalUrl);
+        List<Element> allBooks;
+        try {
+            allBooks = getBookElementsFromListingPage(finalUrl);
+        } catch (FetchException e) {
+            System.out.printf("Error while loading url %s: %s\n", finalUrl, e.getMessage());
+            if (claimed) {
+                recordFailedPage(pageUrl, currentPage);
+            }
             return null;
         }
-
-        // Get list of books on the page
-        Element listOfBooks = pageDocument.getElementsByClass("product-list styles_product-list__vruLH")
-                .first();
-        if (listOfBooks == null) {
-            System.out.printf("Url with page %d doesn't have any book\n", currentPage);
-            repository.setCurrentPageForUrl(
-                    pageUrl,
-                    oldPageValue
-            );
+        if (allBooks == null) {
+            // The listing has ended, so no books are lost. Give the page back,
+            // unless another crawler has claimed a later one meanwhile
+            if (claimed) {
+                repository.compareAndSetPage(pageUrl, currentPage, currentPage - 1);
+            }
             return null;
         }
 
         // Calculate how many books to show
-        List<Element> allBooks = listOfBooks.getElementsByClass("styles_product-list__item__rjWBQ").asList();
         List<Element> books;
 
         if (page > 0 && size > 0) {
@@ -233,49 +487,494 @@ public class Scraper {
             books = allBooks;
         }
 
+        try {
+            // A single page isn't a part of a crawl, so its books are not recorded in the checkpoint
+            return processBookElementsList(books, processingType, BookGenreUrlParser.getGenreByUrl(pageUrl),
+                    url -> { });
+        } catch (RuntimeException e) {
+            System.out.printf("Error while processing url %s: %s\n", finalUrl, e.getMessage());
+            if (claimed) {
+                recordFailedPage(pageUrl, currentPage);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Record a claimed page as failed, so a later claim of its url gets it again
+     * @param pageUrl url
+     * @param page page
+     */
+    private void recordFailedPage(String pageUrl, int page) {
+        try {
+            repository.addFailedPage(pageUrl, page);
+        } catch (RuntimeException e) {
+            System.out.printf("Can't record failed page %d of url %s: %s\n", page, pageUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * Crawl every page of a genre until a page without books is reached.
+     * Next listing page is fetched and parsed while books of the current one are still processed.
+     * With a checkpoint, pages and books finished by an earlier interrupted crawl of the genre are skipped
+     * @param genre genre
+     * @param processingType processing type of books on every page
+     * @param pageConsumer receives books of every page as soon as the page is done
+     * @return amount of crawled pages
+     * @throws FetchException if a listing page could not be loaded, pages before it are already processed
+     */
+    public int crawlGenre(BookGenre genre, ProcessingType processingType, Consumer<List<Book>> pageConsumer)
+            throws FetchException {
+        String pageUrl = BookGenreUrlParser.getUrlByGenre(genre);
+        CrawlCheckpoint currentCheckpoint = checkpoint;
+        String scope = genre.name();
+        int page = 1;
+
+        while (currentCheckpoint != null && currentCheckpoint.isPageDone(scope, pageUrl + "?page=" + page)) {
+            page++;
+        }
+        if (page > 1) {
+            System.out.printf("Resuming %s from %d page\n", genre, page);
+        }
+
+        try (ExecutorService prefetcher = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Element> books = getBookElementsFromListingPage(pageUrl + "?page=" + page);
+
+            while (books != null) {
+                String currentUrl = pageUrl + "?page=" + page;
+                String nextUrl = pageUrl + "?page=" + (page + 1);
+                Future<List<Element>> nextBooks = prefetcher.submit(() -> getBookElementsFromListingPage(nextUrl));
+
+                if (currentCheckpoint != null) {
+                    books = books.stream()
+                            .filter(bookHtml -> {
+                                String bookUrl = getBookUrl(bookHtml);
+                                return bookUrl == null || !currentCheckpoint.isBookDone(scope, bookUrl);
+                            })
+                            .toList();
+                }
+
+                System.out.printf("Processing %d page of %s\n", page, genre);
+                pageConsumer.accept(processBookElementsList(books, processingType, genre,
+                        bookUrl -> markBookDone(genre, bookUrl)));
+                if (currentCheckpoint != null) {
+                    currentCheckpoint.markPageDone(scope, currentUrl);
+                }
+
+                try {
+                    books = nextBooks.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new FetchException(nextUrl, FetchException.Reason.INTERRUPTED, e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof FetchException cause) {
+                        throw cause;
+                    }
+                    throw new IllegalStateException("Can't load url " + nextUrl, e.getCause());
+                }
+                page++;
+            }
+        }
+        return page - 1;
+    }
+
+    /**
+     * Crawl every page of a genre until a page without books is reached
+     * @param genre genre
+     * @param processingType processing type of books on every page
+     * @return books of all pages
+     * @throws FetchException if a listing page could not be loaded
+     */
+    public List<Book> crawlGenre(BookGenre genre, ProcessingType processingType) throws FetchException {
+        List<Book> books = new ArrayList<>();
+        crawlGenre(genre, processingType, books::addAll);
+        return books;
+    }
+
+    /**
+     * Crawl product pages listed in a sitemap, which is read through the fetcher of the scraper
+     * @param sitemapUrl url of the sitemap or sitemap index
+     * @param bookConsumer receives every new or updated book
+     * @return amount of loaded product pages
+     */
+    public int crawlSitemap(String sitemapUrl, Consumer<Book> bookConsumer) {
+        return crawlSitemap(new SitemapReader(fetcher), sitemapUrl, bookConsumer);
+    }
+
+    /**
+     * Crawl product pages listed in a sitemap instead of walking listing pages.
+     * A known book is loaded again only if the sitemap says it changed after it was scraped.
+     * A book which fails to load is reported and doesn't stop the crawl
+     * @param sitemapReader sitemap reader
+     * @param sitemapUrl url of the sitemap or sitemap index
+     * @param bookConsumer receives every new or updated book
+     * @return amount of loaded product pages
+     */
+    public int crawlSitemap(SitemapReader sitemapReader, String sitemapUrl, Consumer<Book> bookConsumer) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicInteger loaded = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            sitemapReader.read(sitemapUrl, entry -> {
+                try {
+                    // Blocks the sitemap stream while all permits are taken
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                executor.submit(() -> {
+                    try {
+                        Book book = getChangedBook(entry);
+                        if (book != null) {
+                            loaded.incrementAndGet();
+                            bookConsumer.accept(book);
+                        }
+                    } catch (RuntimeException e) {
+                        System.out.printf("Error while loading book %s from sitemap: %s\n", entry.url(), e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            });
+        }
+        return loaded.get();
+    }
+
+    /**
+     * Load a book from a sitemap entry if it is new or changed since it was scraped
+     * @param entry sitemap entry
+     * @return new or updated book, null if the book didn't change or can't be loaded
+     */
+    private Book getChangedBook(SitemapEntry entry) {
+        Optional<Book> bookFromDB = findBook(entry.url());
+        if (bookFromDB.isEmpty()) {
+            return createBookFromUrl(entry.url());
+        }
+
+        Book book = bookFromDB.get();
+        if (book.isPartial()) {
+            return enrichBook(book);
+        }
+        boolean unchanged = book.getLastScrapedAt() != null && entry.lastModified() != null
+                && !entry.lastModified().isAfter(book.getLastScrapedAt());
+        return unchanged ? null : refreshBook(book);
+    }
+
+    /**
+     * Load a listing page and get its book cards
+     * @param listingUrl listing page url with page number
+     * @return book elements or null if page doesn't exist or doesn't have any book, i.e. the listing has ended
+     * @throws FetchException if page could not be loaded
+     */
+    private List<Element> getBookElementsFromListingPage(String listingUrl) throws FetchException {
+        Document pageDocument;
+        try {
+            pageDocument = getDocumentFromUrl(listingUrl);
+        } catch (FetchException e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                System.out.printf("Url %s doesn't exist\n", listingUrl);
+                return null;
+            }
+            throw e;
+        }
+
+        // Get list of books on the page
+        Element listOfBooks = pageDocument.getElementsByClass("product-list styles_product-list__vruLH")
+                .first();
+        if (listOfBooks == null) {
+            System.out.printf("Url %s doesn't have any book\n", listingUrl);
+            return null;
+        }
+        return listOfBooks.getElementsByClass("styles_product-list__item__rjWBQ").asList();
+    }
+
+    /**
+     * Get product urls of all books on a listing page
+     * @param listingUrl listing page url with page number
+     * @return product urls or null if page doesn't exist or doesn't have any book
+     * @throws FetchException if page could not be loaded
+     */
+    List<String> getBookUrlsFromListingPage(String listingUrl) throws FetchException {
+        List<Element> books = getBookElementsFromListingPage(listingUrl);
+        if (books == null) {
+            return null;
+        }
+        List<String> urls = new ArrayList<>(books.size());
+        for (Element bookHtml : books) {
+            String bookUrl = getBookUrl(bookHtml);
+            if (bookUrl != null) {
+                urls.add(bookUrl);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Get product url of a book card on a listing page
+     * @param bookHtml book card
+     * @return absolute url or null if the card has no link
+     */
+    private String getBookUrl(Element bookHtml) {
+        Element bookUrlElement = bookHtml.getElementsByTag("a").first();
+        return bookUrlElement != null ? "https://www.apollo.ee" + bookUrlElement.attr("href") : null;
+    }
+
+    /**
+     * Process books elements of a listing page.
+     * Stored books of the page are found with one query before any product page is fetched
+     * @param books books
+     * @param processingType processing type
+     * @param genre genre of the listing page
+     * @param bookDone receives url of every successfully processed book, which loaded its product page
+     * @return list of books
+     */
+    private List<Book> processBookElementsList(List<Element> books, ProcessingType processingType,
+                                               BookGenre genre, Consumer<String> bookDone) {
+        List<String> urls = new ArrayList<>(books.size());
+        for (Element bookHtml : books) {
+            String bookUrl = getBookUrl(bookHtml);
+            if (bookUrl != null) {
+                urls.add(bookUrl);
+            }
+        }
+        Map<String, Book> storedBooks = findBooks(urls);
+
         return switch (processingType) {
-            case SYNCHRONIZED -> processBookElementsListSynchronized(books);
-            case PARALLEL -> processBookElementsListParallel(books);
+            case SYNCHRONIZED -> processBookElementsListSynchronized(urls, storedBooks, bookDone);
+            case PARALLEL -> processBookElementsListParallel(urls, storedBooks, bookDone);
+            case VIRTUAL_THREADS -> processBookElementsListVirtualThreads(urls, storedBooks, bookDone);
+            case SHALLOW -> processBookElementsListShallow(books, storedBooks, genre);
         };
     }
 
     /**
-     * Process received books elements list parallel (faster, asynchronous)
+     * Get a book of a listing page
+     * @param url url
+     * @param storedBooks stored books of the page
+     * @param bookDone receives the url if the book was processed successfully
+     * @return book instance or null
+     */
+    private Book processBook(String url, Map<String, Book> storedBooks, Consumer<String> bookDone) {
+        Book storedBook = storedBooks.get(url);
+        Book book = storedBook != null ? getStoredBook(storedBook) : createBookFromUrl(url);
+        if (book != null) {
+            bookDone.accept(url);
+        }
+        return book;
+    }
+
+    /**
+     * Process received books elements list without loading product pages.
+     * New books are built from the listing cards and stored as partial together in one transaction,
+     * known books only get the new price
      * @param books books
+     * @param storedBooks stored books of the page
+     * @param genre genre of the listing page
      * @return list of books
      */
-    private List<Book> processBookElementsListParallel(List<Element> books) {
-        return books.parallelStream()
-                .map(bookHtml -> {
-                    Element bookUrlElement = bookHtml.getElementsByTag("a").first();
-                    if (bookUrlElement != null) {
-                        String bookUrl = "https://www.apollo.ee" + bookUrlElement.attr("href");
-                        return getBookByUrl(bookUrl);
+    private List<Book> processBookElementsListShallow(List<Element> books, Map<String, Book> storedBooks,
+                                                      BookGenre genre) {
+        List<Book> booksFromPage = new ArrayList<>(books.size());
+        List<Book> newBooks = new ArrayList<>();
+
+        for (Element bookHtml : books) {
+            String bookUrl = getBookUrl(bookHtml);
+            if (bookUrl == null) {
+                continue;
+            }
+            Book cardBook = createBookFromListingCard(bookHtml, bookUrl, genre);
+            Book book = storedBooks.get(bookUrl);
+
+            if (book != null) {
+                if (cardBook.getPrice() >= 0 && !cardBook.getPrice().equals(book.getPrice())) {
+                    // The stored book is replaced only once the new price is saved
+                    Book repricedBook = book.copy();
+                    repricedBook.setPrice(cardBook.getPrice());
+                    try {
+                        repository.updateBook(repricedBook);
+                        book = repricedBook;
+                    } catch (RuntimeException e) {
+                        System.out.printf("Error while updating price of %s: %s\n", bookUrl, e.getMessage());
                     }
-                    return null;
-                })
+                }
+                booksFromPage.add(book);
+            } else {
+                newBooks.add(cardBook);
+                booksFromPage.add(cardBook);
+            }
+        }
+
+        if (!newBooks.isEmpty()) {
+            try {
+                repository.saveAll(newBooks);
+                newBooks.forEach(book -> rememberUrl(book.getUrl()));
+            } catch (RuntimeException e) {
+                // Another crawler stored some of the books meanwhile. Those are skipped, not overwritten
+                // with the partial card, because the stored book may already be complete
+                System.out.printf("Error while saving page, saving books one by one: %s\n", e.getMessage());
+                for (Book cardBook : newBooks) {
+                    cardBook.setId(0);
+                    try {
+                        repository.addBook(cardBook);
+                        rememberUrl(cardBook.getUrl());
+                    } catch (RuntimeException bookError) {
+                        System.out.printf("Error while saving book %s: %s\n", cardBook.getUrl(),
+                                bookError.getMessage());
+                        booksFromPage.remove(cardBook);
+                    }
+                }
+            }
+        }
+        return booksFromPage;
+    }
+
+    /**
+     * Build a partial book from a listing card, which only shows title, price and link
+     * @param bookHtml book card
+     * @param bookUrl product url
+     * @param genre genre of the listing page
+     * @return partial book
+     */
+    private Book createBookFromListingCard(Element bookHtml, String bookUrl, BookGenre genre) {
+        Element link = bookHtml.getElementsByTag("a").first();
+        Element price = bookHtml.getElementsByClass("styles_product-price-value__Ai9c8").first();
+        String title = link != null ? link.text() : "";
+
+        return Book.builder()
+                .withTitle(title.isEmpty() && link != null ? link.attr("title") : title)
+                .withPrice(price != null ? SinglePassBookPageExtractor.parsePrice(price.text()) : -1)
+                .withGenre(genre)
+                .withUrl(bookUrl)
+                .withPartial(true)
+                .build();
+    }
+
+    /**
+     * Process received books elements list on virtual threads.
+     * Every book gets its own virtual thread, but no more than maxConcurrency books are fetched at once.
+     * Stored complete books don't get a thread. New books of the page are saved together in one transaction
+     * @param urls product urls
+     * @param storedBooks stored books of the page
+     * @param bookDone receives url of every successfully processed book
+     * @return list of books in the same order as on the page
+     */
+    private List<Book> processBookElementsListVirtualThreads(List<String> urls, Map<String, Book> storedBooks,
+                                                             Consumer<String> bookDone) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<Book>> futures = new ArrayList<>(urls.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String bookUrl : urls) {
+                Book storedBook = storedBooks.get(bookUrl);
+                if (storedBook != null && !storedBook.isPartial()) {
+                    futures.add(CompletableFuture.completedFuture(getStoredBook(storedBook)));
+                    continue;
+                }
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return storedBook != null ? getStoredBook(storedBook) : loadBookFromProductPage(bookUrl);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        List<Book> booksFromPage = new ArrayList<>(futures.size());
+        for (Future<Book> future : futures) {
+            try {
+                Book book = future.get();
+                if (book != null) {
+                    booksFromPage.add(book);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.out.printf("Error while processing book: %s\n", e.getCause().getMessage());
+            }
+        }
+
+        saveNewBooks(booksFromPage);
+        booksFromPage.forEach(book -> bookDone.accept(book.getUrl()));
+        return booksFromPage;
+    }
+
+    /**
+     * Save books loaded from product pages that aren't stored yet together in one transaction.
+     * If that fails, they are saved one by one, and books that still can't be saved are removed from the list
+     * @param books processed books, new ones have id 0
+     */
+    private void saveNewBooks(List<Book> books) {
+        List<Book> newBooks = books.stream().filter(book -> book.getId() == 0).toList();
+        if (newBooks.isEmpty()) {
+            return;
+        }
+        // Authors are created through the cache, so concurrent pages don't store the same author twice
+        newBooks.forEach(book -> {
+            Author author = book.getAuthor();
+            author.setId(authorCache.getAuthorId(author.getFirstName(), author.getLastName()));
+        });
+        try {
+            repository.saveAll(newBooks);
+            newBooks.forEach(book -> rememberUrl(book.getUrl()));
+        } catch (RuntimeException e) {
+            // Another crawler stored some of the books meanwhile
+            System.out.printf("Error while saving page, saving books one by one: %s\n", e.getMessage());
+            List<Book> unsavedBooks = newBooks.stream().filter(book -> !upsertBook(book)).toList();
+            books.removeAll(unsavedBooks);
+        }
+    }
+
+    /**
+     * Save a single book of a page whose books could not be saved together
+     * @param book book with the id of its stored author
+     * @return true if the book was saved
+     */
+    private boolean upsertBook(Book book) {
+        try {
+            repository.upsertBook(book);
+        } catch (RuntimeException e) {
+            System.out.printf("Error while saving book %s: %s\n", book.getUrl(), e.getMessage());
+            return false;
+        }
+        rememberUrl(book.getUrl());
+        return true;
+    }
+
+    /**
+     * Process received books elements list parallel (faster, asynchronous)
+     * @param urls product urls
+     * @param storedBooks stored books of the page
+     * @param bookDone receives url of every successfully processed book
+     * @return list of books
+     */
+    private List<Book> processBookElementsListParallel(List<String> urls, Map<String, Book> storedBooks,
+                                                       Consumer<String> bookDone) {
+        return urls.parallelStream()
+                .map(bookUrl -> processBook(bookUrl, storedBooks, bookDone))
                 .filter(Objects::nonNull)
                 .toList();
     }
 
     /**
      * Process received books elements list synchronized (slower, synchronized)
-     * @param books books
+     * @param urls product urls
+     * @param storedBooks stored books of the page
+     * @param bookDone receives url of every successfully processed book
      * @return books list
      */
-    private List<Book> processBookElementsListSynchronized(List<Element> books) {
+    private List<Book> processBookElementsListSynchronized(List<String> urls, Map<String, Book> storedBooks,
+                                                           Consumer<String> bookDone) {
         List<Book> booksFromPage = new ArrayList<>();
 
         int booksProcessed = 0;
 
-        for (Element bookHtml : books) {
-            Element bookUrlElement = bookHtml.getElementsByTag("a").first();
-            if (bookUrlElement != null) {
-                String bookUrl = "https://www.apollo.ee/"
-                        + bookUrlElement.attr("href");
-                booksFromPage.add(getBookByUrl(bookUrl));
-                System.out.printf("Books processed: %d\n", ++booksProcessed);
-            }
+        for (String bookUrl : urls) {
+            booksFromPage.add(processBook(bookUrl, storedBooks, bookDone));
+            System.out.printf("Books processed: %d\n", ++booksProcessed);
         }
         return booksFromPage;
     }
@@ -290,11 +989,36 @@ public class Scraper {
     }
 
     /**
-     * Get all books from database
-     * @return list of books
+     * Pass all books from database to a consumer, reading them in keyset pages, see forEachBookByGenre
+     * @param consumer consumer of books
+     * @return amount of books
+     */
+    public int forEachBook(Consumer<Book> consumer) {
+        int count = 0;
+        List<Book> page = repository.getBooksAfter(0, BOOK_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(consumer);
+            count += page.size();
+            page = page.size() < BOOK_PAGE_SIZE ? List.of()
+                    : repository.getBooksAfter(page.getLast().getId(), BOOK_PAGE_SIZE);
+        }
+        return count;
+    }
+
+    /**
+     * Stream all books from database without loading the whole table. The stream must be closed
+     * @return stream of books
+     */
+    public Stream<Book> streamAllBooks() {
+        return repository.streamAllBooks();
+    }
+
+    /**
+     * Stream summaries of all books from database for showing them. The stream must be closed
+     * @return stream of summaries
      */
-    public List<Book> getAllBooks() {
-        return repository.getAllBooks();
+    public Stream<BookSummary> streamBookSummaries() {
+        return repository.streamBookSummaries();
     }
 
 }
@@ -0,0 +1,136 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.models.Author;
+import ee.taltech.iti0202.bookscraper.models.Book;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.QueryParser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extractor which walks the product section once and fills the book builder directly.
+ * Selectors and the price pattern are compiled once, the walk stops as soon as every field is found
+ */
+public class SinglePassBookPageExtractor implements BookPageExtractor {
+
+    private static final Pattern PRICE_PATTERN = Pattern.compile("(\\d+)(,\\d+)?");
+    private static final Evaluator PRODUCT_SECTION = QueryParser.parse("[aria-label=Product Section]");
+    private static final Evaluator GENRE_BREADCRUMB =
+            QueryParser.parse(".styles_breadcrumbs__NarXt ol li:nth-of-type(4)");
+    private static final int FIELDS_COUNT = 9;
+
+    /**
+     * Node filter collecting the fields of one product section
+     */
+    private static final class FieldCollector implements NodeFilter {
+        private final Book.BookBuilder builder = Book.builder()
+                .withTitle("")
+                .withFormat("")
+                .withLanguage("")
+                .withPages(-1)
+                .withPrice(-1)
+                .withPublisher("")
+                .withPublishingYear("")
+                .withGenre("");
+        private String authorName = "";
+        private boolean titleFound;
+        private boolean priceFound;
+        private boolean genreFound;
+        private int found;
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (!(node instanceof Element element)) {
+                return FilterResult.SKIP_ENTIRELY;
+            }
+
+            String id = element.id();
+            if (!id.isEmpty()) {
+                switch (id) {
+                    case "meta-publisher" -> builder.withPublisher(take(element));
+                    case "meta-format" -> builder.withFormat(take(element));
+                    case "meta-language" -> builder.withLanguage(take(element));
+                    case "meta-published_at" -> builder.withPublishingYear(take(element));
+                    case "meta-pages" -> builder.withPages(Integer.parseInt(take(element)));
+                    case "meta-author" -> authorName = take(element);
+                    default -> { }
+                }
+            }
+            if (!titleFound && element.hasClass("styles_heading__title__Xym7A")) {
+                titleFound = true;
+                builder.withTitle(take(element));
+            } else if (!priceFound && element.hasClass("styles_product-price-value__Ai9c8")) {
+                priceFound = true;
+                builder.withPrice(parsePrice(take(element)));
+            } else if (!genreFound && element.nameIs("li") && element.is(GENRE_BREADCRUMB)) {
+                genreFound = true;
+                builder.withGenre(take(element));
+            }
+
+            return found == FIELDS_COUNT ? FilterResult.STOP : FilterResult.CONTINUE;
+        }
+
+        private String take(Element element) {
+            found++;
+            return element.text();
+        }
+    }
+
+    @Override
+    public Book extract(String html, String url) {
+        Element bookSection = Jsoup.parse(html, url).selectFirst(PRODUCT_SECTION);
+        if (bookSection == null) {
+            return null;
+        }
+
+        FieldCollector collector = new FieldCollector();
+        NodeTraversor.filter(collector, bookSection);
+
+        Book book = collector.builder.withUrl(url).build();
+        book.setAuthor(parseAuthor(collector.authorName));
+        return book;
+    }
+
+    /**
+     * Parse price like '11,49 €'. Shared by all extractors and listing cards, so the pattern is compiled once
+     * @param text price text
+     * @return price or -1 if there is no number
+     */
+    static double parsePrice(String text) {
+        Matcher m = PRICE_PATTERN.matcher(text);
+        if (m.find()) {
+            return Double.parseDouble(m.group(0).replace(',', '.'));
+        }
+        return -1;
+    }
+
+    /**
+     * Build an author from the name shown on the page without splitting it into an array.
+     * First word is the first name, the rest is the last name, commas count as spaces
+     * @param fullName author's name from the page
+     * @return new author
+     */
+    static Author parseAuthor(String fullName) {
+        int separator = -1;
+        for (int i = 0; i < fullName.length(); i++) {
+            char c = fullName.charAt(i);
+            if (c == ' ' || c == ',') {
+                separator = i;
+                break;
+            }
+        }
+
+        String firstName = separator < 0 ? fullName.trim() : fullName.substring(0, separator).trim();
+        String lastName = separator < 0 ? "" : fullName.substring(separator + 1).replace(',', ' ').trim();
+        return Author.builder()
+                .withFirstName(firstName)
+                .withLastName(lastName)
+                .build();
+    }
+}
@@ -0,0 +1,11 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import java.time.Instant;
+
+/**
+ * Url found in a sitemap
+ * @param url page url
+ * @param lastModified last modification time from the sitemap or null if not provided
+ */
+public record SitemapEntry(String url, Instant lastModified) {
+}
@@ -0,0 +1,205 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.fetcher.FetchException;
+import ee.taltech.iti0202.bookscraper.fetcher.PageFetcher;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams sitemap XML files with StAX. Sitemap indexes are followed recursively,
+ * gzip compressed sitemaps are recognized by their content. Only elements of the sitemap namespace are read,
+ * so extensions like image:loc inside an url entry are skipped
+ */
+public class SitemapReader {
+
+    /**
+     * Source of sitemap files
+     */
+    @FunctionalInterface
+    public interface SitemapSource {
+
+        /**
+         * Open a sitemap file
+         * @param url sitemap url
+         * @return raw (possibly gzip compressed) content
+         * @throws FetchException if the file could not be opened
+         */
+        InputStream open(String url) throws FetchException;
+    }
+
+    private static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final Predicate<String> PRODUCT_URL = url -> url.contains("/en/") && url.endsWith(".html");
+
+    private final SitemapSource source;
+    private final Predicate<String> urlFilter;
+    private final XMLInputFactory xmlInputFactory;
+
+    /**
+     * Constructor. Streams sitemaps through the fetcher and keeps only english product pages
+     * @param fetcher fetcher used to download sitemaps
+     */
+    public SitemapReader(PageFetcher fetcher) {
+        this(fetcher::openStream, PRODUCT_URL);
+    }
+
+    /**
+     * Constructor
+     * @param source source of sitemap files
+     * @param urlFilter only urls passing the filter are reported
+     */
+    public SitemapReader(SitemapSource source, Predicate<String> urlFilter) {
+        this.source = source;
+        this.urlFilter = urlFilter;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Read a sitemap or a sitemap index. Every sitemap is read once, even if indexes refer to each other
+     * @param sitemapUrl url of the sitemap
+     * @param consumer receives every page url as soon as it is read
+     * @return amount of reported urls
+     */
+    public int read(String sitemapUrl, Consumer<SitemapEntry> consumer) {
+        return read(sitemapUrl, consumer, new HashSet<>());
+    }
+
+    /**
+     * Read a sitemap and the child sitemaps of an index which weren't read yet
+     * @param sitemapUrl url of the sitemap
+     * @param consumer receives every page url as soon as it is read
+     * @param visited urls of sitemaps already read in this call of read
+     * @return amount of reported urls
+     */
+    private int read(String sitemapUrl, Consumer<SitemapEntry> consumer, Set<String> visited) {
+        if (!visited.add(sitemapUrl)) {
+            return 0;
+        }
+        List<String> childSitemaps = new ArrayList<>();
+        int reported = 0;
+
+        try (InputStream in = decompress(source.open(sitemapUrl))) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                String loc = null;
+                Instant lastModified = null;
+                // Depth of the current element and of the url or sitemap entry, -1 outside of an entry
+                int depth = 0;
+                int entryDepth = -1;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        if (!isSitemapElement(reader)) {
+                            continue;
+                        }
+                        String name = reader.getLocalName();
+                        if (name.equals("url") || name.equals("sitemap")) {
+                            entryDepth = depth;
+                            loc = null;
+                            lastModified = null;
+                        } else if (entryDepth != -1 && depth == entryDepth + 1) {
+                            // Reading the text moves the reader to the end of the element
+                            switch (name) {
+                                case "loc" -> {
+                                    loc = reader.getElementText().trim();
+                                    depth--;
+                                }
+                                case "lastmod" -> {
+                                    lastModified = parseLastModified(reader.getElementText().trim());
+                                    depth--;
+                                }
+                                default -> { }
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (depth == entryDepth && isSitemapElement(reader) && loc != null) {
+                            if (reader.getLocalName().equals("sitemap")) {
+                                childSitemaps.add(loc);
+                            } else if (urlFilter.test(loc)) {
+                                consumer.accept(new SitemapEntry(loc, lastModified));
+                                reported++;
+                            }
+                        }
+                        if (depth == entryDepth) {
+                            entryDepth = -1;
+                        }
+                        depth--;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (FetchException e) {
+            System.out.printf("Error while loading sitemap %s: %s\n", sitemapUrl, e.getReason());
+        } catch (IOException | XMLStreamException e) {
+            System.out.printf("Error while reading sitemap %s: %s\n", sitemapUrl, e.getMessage());
+        }
+
+        for (String childSitemap : childSitemaps) {
+            reported += read(childSitemap, consumer, visited);
+        }
+        return reported;
+    }
+
+    /**
+     * Check if the current element belongs to the sitemap namespace
+     * @param reader reader positioned at a start or end element
+     * @return true if it is a sitemap element
+     */
+    private static boolean isSitemapElement(XMLStreamReader reader) {
+        return SITEMAP_NAMESPACE.equals(reader.getNamespaceURI());
+    }
+
+    /**
+     * Unpack gzip content, pass anything else as is
+     * @param in raw content
+     * @return plain content
+     * @throws IOException if content can't be read
+     */
+    private InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        return magic == GZIP_MAGIC ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    /**
+     * Parse W3C datetime used by sitemaps: either a date or a date with time and offset
+     * @param text lastmod text
+     * @return instant or null if text can't be parsed
+     */
+    static Instant parseLastModified(String text) {
+        try {
+            if (text.length() == 10) {
+                return LocalDate.parse(text).atStartOfDay().toInstant(ZoneOffset.UTC);
+            }
+            return OffsetDateTime.parse(text).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
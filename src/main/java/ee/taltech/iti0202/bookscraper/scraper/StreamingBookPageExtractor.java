@@ -0,0 +1,185 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.models.Book;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Extractor which reads the product page as a stream of completed elements
+ * and stops parsing as soon as every field of the book has been seen.
+ * Completed elements are removed from the document once they are checked, so only open elements and fields
+ * being read are kept in memory, and the rest of the page (related products, footer, scripts) is never parsed
+ */
+public class StreamingBookPageExtractor implements BookPageExtractor {
+
+    private static final Evaluator PRODUCT_SECTION = QueryParser.parse("[aria-label=Product Section]");
+    private static final Evaluator BREADCRUMBS_LIST = QueryParser.parse(".styles_breadcrumbs__NarXt ol");
+    private static final int GENRE_BREADCRUMB_POSITION = 4;
+    private static final int IN_PRODUCT_SECTION = 1;
+    private static final int IN_FIELD = 2;
+
+    /**
+     * Fields of the book found so far and the parsing state needed to find the rest
+     */
+    private static final class Fields {
+        private String title;
+        private String publisher;
+        private String format;
+        private String language;
+        private String publishedAt;
+        private String pages;
+        private String price;
+        private String genre;
+        private String author;
+        private boolean inProductSection;
+        private boolean productSectionDone;
+        private Element breadcrumbs;
+        private int breadcrumbPosition;
+        // State of open elements, worked out once per element from its own attributes and its parent's state
+        private final Map<Element, Integer> openElements = new IdentityHashMap<>();
+
+        private boolean isComplete() {
+            return productSectionDone || title != null && publisher != null && format != null && language != null
+                    && publishedAt != null && pages != null && price != null && genre != null && author != null;
+        }
+    }
+
+    @Override
+    public Book extract(String html, String url) {
+        Fields fields = new Fields();
+
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(html, url)) {
+            Iterator<Element> elements = parser.iterator();
+            while (!fields.isComplete() && elements.hasNext()) {
+                Element element = elements.next();
+                int state = stateOf(element, fields);
+                fields.openElements.remove(element);
+                visit(element, state, fields);
+                // A field still being read needs the text of its children
+                if ((stateOf(element.parent(), fields) & IN_FIELD) == 0) {
+                    element.remove();
+                }
+            }
+        }
+
+        if (!fields.inProductSection) {
+            return null;
+        }
+
+        Book book = Book.builder()
+                .withTitle(fields.title != null ? fields.title : "")
+                .withFormat(fields.format != null ? fields.format : "")
+                .withLanguage(fields.language != null ? fields.language : "")
+                .withPages(fields.pages != null ? Integer.parseInt(fields.pages) : -1)
+                .withPrice(fields.price != null ? SinglePassBookPageExtractor.parsePrice(fields.price) : -1)
+                .withPublisher(fields.publisher != null ? fields.publisher : "")
+                .withPublishingYear(fields.publishedAt != null ? fields.publishedAt : "")
+                .withGenre(fields.genre != null ? fields.genre : "")
+                .withUrl(url)
+                .build();
+        book.setAuthor(DomBookPageExtractor.parseAuthor(fields.author != null ? fields.author : ""));
+        return book;
+    }
+
+    /**
+     * Get state of an element: whether it is inside the product section and inside an element holding a field
+     * @param element element
+     * @param fields parsing state
+     * @return IN_PRODUCT_SECTION and IN_FIELD flags
+     */
+    private int stateOf(Element element, Fields fields) {
+        if (element == null) {
+            return 0;
+        }
+        Integer known = fields.openElements.get(element);
+        if (known != null) {
+            return known;
+        }
+        int state = stateOf(element.parent(), fields);
+        if (element.is(PRODUCT_SECTION)) {
+            state |= IN_PRODUCT_SECTION;
+        }
+        if (mayHoldField(element)) {
+            state |= IN_FIELD;
+        }
+        fields.openElements.put(element, state);
+        return state;
+    }
+
+    /**
+     * Check whether element may be one of the fields, judging by its own tag and attributes
+     * @param element element
+     * @return true if element may hold a field
+     */
+    private boolean mayHoldField(Element element) {
+        return element.id().startsWith("meta-") || element.nameIs("li")
+                || element.hasClass("styles_heading__title__Xym7A")
+                || element.hasClass("styles_product-price-value__Ai9c8");
+    }
+
+    /**
+     * Check a just completed element and remember it if it holds one of the fields
+     * @param element completed element
+     * @param state state of the element
+     * @param fields fields found so far
+     */
+    private void visit(Element element, int state, Fields fields) {
+        if ((state & IN_PRODUCT_SECTION) == 0) {
+            return;
+        }
+        fields.inProductSection = true;
+        if (element.is(PRODUCT_SECTION)) {
+            // Fields outside of the product section don't belong to the book
+            fields.productSectionDone = true;
+            return;
+        }
+
+        String id = element.id();
+        if (id.startsWith("meta-")) {
+            switch (id) {
+                case "meta-publisher" -> fields.publisher = element.text();
+                case "meta-format" -> fields.format = element.text();
+                case "meta-language" -> fields.language = element.text();
+                case "meta-published_at" -> fields.publishedAt = element.text();
+                case "meta-pages" -> fields.pages = element.text();
+                case "meta-author" -> fields.author = element.text();
+                default -> { }
+            }
+        } else if (fields.title == null && element.hasClass("styles_heading__title__Xym7A")) {
+            fields.title = element.text();
+        } else if (fields.price == null && element.hasClass("styles_product-price-value__Ai9c8")) {
+            fields.price = element.text();
+        } else if (fields.genre == null && element.nameIs("li") && isGenreBreadcrumb(element, fields)) {
+            fields.genre = element.text();
+        }
+    }
+
+    /**
+     * Check whether element is the breadcrumb holding the genre.
+     * Completed breadcrumbs are removed, so the position is counted as they complete
+     * @param li list item element
+     * @param fields parsing state
+     * @return true if it is the genre breadcrumb
+     */
+    private boolean isGenreBreadcrumb(Element li, Fields fields) {
+        Element list = li.parent();
+        if (list == null) {
+            return false;
+        }
+        if (list != fields.breadcrumbs) {
+            if (!list.is(BREADCRUMBS_LIST)) {
+                return false;
+            }
+            fields.breadcrumbs = list;
+            fields.breadcrumbPosition = 0;
+        }
+        return ++fields.breadcrumbPosition == GENRE_BREADCRUMB_POSITION;
+    }
+}
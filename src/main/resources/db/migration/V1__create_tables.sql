@@ -0,0 +1,28 @@
+-- Tables used before the schema was managed. Existing databases keep their tables as they are
+CREATE SEQUENCE IF NOT EXISTS author_id_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS book_id_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS author (
+    id INTEGER PRIMARY KEY,
+    first_name VARCHAR(255),
+    last_name VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS book (
+    id INTEGER PRIMARY KEY,
+    author_id INTEGER REFERENCES author (id),
+    title VARCHAR(255),
+    language VARCHAR(255),
+    publisher VARCHAR(255),
+    url VARCHAR(255),
+    published_at VARCHAR(255),
+    pages INTEGER,
+    price DOUBLE PRECISION,
+    format VARCHAR(255),
+    genre VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS url_page (
+    url VARCHAR(255) NOT NULL,
+    page INTEGER NOT NULL
+);
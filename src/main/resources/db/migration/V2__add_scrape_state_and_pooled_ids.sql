@@ -0,0 +1,7 @@
+-- Partial books from listing cards and the time of the last scrape
+ALTER TABLE book ADD COLUMN IF NOT EXISTS partial BOOLEAN DEFAULT FALSE NOT NULL;
+ALTER TABLE book ADD COLUMN IF NOT EXISTS last_scraped_at TIMESTAMP WITH TIME ZONE;
+
+-- Hibernate takes 50 ids per sequence call, serial sequences of old databases stepped by 1
+ALTER SEQUENCE author_id_seq INCREMENT BY 50;
+ALTER SEQUENCE book_id_seq INCREMENT BY 50;
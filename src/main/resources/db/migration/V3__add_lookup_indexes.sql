@@ -0,0 +1,16 @@
+-- Keep the oldest copy of a book stored twice before urls were unique
+DELETE FROM book
+WHERE url IS NOT NULL
+  AND id NOT IN (SELECT MIN(id) FROM book WHERE url IS NOT NULL GROUP BY url);
+
+-- Keep the furthest page of a listing url stored twice
+CREATE TABLE url_page_dedup AS SELECT url, MAX(page) AS page FROM url_page GROUP BY url;
+DELETE FROM url_page;
+INSERT INTO url_page (url, page) SELECT url, page FROM url_page_dedup;
+DROP TABLE url_page_dedup;
+
+CREATE UNIQUE INDEX IF NOT EXISTS book_url_key ON book (url);
+CREATE INDEX IF NOT EXISTS book_genre_idx ON book (genre);
+CREATE INDEX IF NOT EXISTS book_author_id_idx ON book (author_id);
+CREATE INDEX IF NOT EXISTS author_name_idx ON author (first_name, last_name);
+CREATE UNIQUE INDEX IF NOT EXISTS url_page_url_key ON url_page (url);
@@ -0,0 +1,6 @@
+-- Claimed listing pages whose loading failed, claimed again before the next new page
+CREATE TABLE IF NOT EXISTS failed_page (
+    url VARCHAR(255) NOT NULL,
+    page INTEGER NOT NULL,
+    PRIMARY KEY (url, page)
+);
@@ -0,0 +1,58 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveRateLimiterTest {
+
+    private AtomicLong clock;
+    private AdaptiveRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong();
+        limiter = new AdaptiveRateLimiter(2, 1, 4, 1, 0.5, Duration.ofSeconds(1), clock::get);
+    }
+
+    @Test
+    void limiterIncreasesRateAdditivelyOnHealthyResponses() {
+        limiter.onSuccess(Duration.ofMillis(100));
+        assertEquals(3, limiter.getRate());
+
+        limiter.onSuccess(Duration.ofMillis(100));
+        limiter.onSuccess(Duration.ofMillis(100));
+        assertEquals(4, limiter.getRate());
+    }
+
+    @Test
+    void limiterIgnoresSlowResponses() {
+        limiter.onSuccess(Duration.ofSeconds(5));
+        assertEquals(2, limiter.getRate());
+    }
+
+    @Test
+    void limiterDecreasesRateMultiplicativelyOnThrottle() {
+        limiter.onThrottle();
+        assertEquals(1, limiter.getRate());
+
+        limiter.onThrottle();
+        assertEquals(1, limiter.getRate());
+    }
+
+    @Test
+    void limiterMakesCallersWaitWhenBucketIsEmpty() {
+        assertEquals(0, limiter.reserve());
+
+        long wait = limiter.reserve();
+        assertEquals(Duration.ofMillis(500).toNanos(), wait);
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+    }
+}
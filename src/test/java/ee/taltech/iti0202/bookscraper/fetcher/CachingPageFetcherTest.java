@@ -0,0 +1,84 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+
+class CachingPageFetcherTest {
+
+    private static final String URL = "https://www.apollo.ee/en/some-book.html";
+
+    @TempDir
+    private Path cacheDirectory;
+
+    private PageFetcher delegate;
+    private CachingPageFetcher fetcher;
+
+    @BeforeEach
+    void setUp() {
+        delegate = Mockito.mock(PageFetcher.class);
+        fetcher = new CachingPageFetcher(delegate, cacheDirectory);
+    }
+
+    @Test
+    void fetcherReusesCachedBodyOnNotModified() throws FetchException {
+        Mockito.when(delegate.fetch(eq(URL), anyMap()))
+                .thenReturn(new Page(URL, 200, "<html>book</html>", Map.of("etag", "\"v1\"")))
+                .thenReturn(new Page(URL, 304, "", Map.of()));
+
+        fetcher.fetch(URL);
+        Page page = fetcher.fetch(URL);
+
+        assertEquals("<html>book</html>", page.body());
+        assertEquals(200, page.statusCode());
+        Mockito.verify(delegate).fetch(URL, Map.of("If-None-Match", "\"v1\""));
+    }
+
+    @Test
+    void fetcherReplacesCachedBodyWhenPageChanged() throws FetchException {
+        Mockito.when(delegate.fetch(eq(URL), anyMap()))
+                .thenReturn(new Page(URL, 200, "old", Map.of("last-modified", "Mon, 01 Jan 2024 00:00:00 GMT")))
+                .thenReturn(new Page(URL, 200, "new", Map.of("last-modified", "Tue, 02 Jan 2024 00:00:00 GMT")))
+                .thenReturn(new Page(URL, 304, "", Map.of()));
+
+        fetcher.fetch(URL);
+        assertEquals("new", fetcher.fetch(URL).body());
+        assertEquals("new", fetcher.fetch(URL).body());
+
+        Mockito.verify(delegate).fetch(URL, Map.of("If-Modified-Since", "Tue, 02 Jan 2024 00:00:00 GMT"));
+    }
+
+    @Test
+    void fetcherStoresNewValidatorsOfNotModifiedResponse() throws FetchException {
+        Mockito.when(delegate.fetch(eq(URL), anyMap()))
+                .thenReturn(new Page(URL, 200, "<html>book</html>", Map.of("etag", "\"v1\"")))
+                .thenReturn(new Page(URL, 304, "", Map.of("etag", "\"v2\"")))
+                .thenReturn(new Page(URL, 304, "", Map.of()));
+
+        fetcher.fetch(URL);
+        fetcher.fetch(URL);
+        Page page = new CachingPageFetcher(delegate, cacheDirectory).fetch(URL);
+
+        assertEquals("<html>book</html>", page.body());
+        assertEquals("\"v2\"", page.header("ETag"));
+        Mockito.verify(delegate).fetch(URL, Map.of("If-None-Match", "\"v2\""));
+    }
+
+    @Test
+    void fetcherDoesNotCachePagesWithoutValidators() throws FetchException {
+        Mockito.when(delegate.fetch(eq(URL), anyMap())).thenReturn(new Page(URL, 200, "body", Map.of()));
+
+        fetcher.fetch(URL);
+        fetcher.fetch(URL);
+
+        Mockito.verify(delegate, Mockito.times(2)).fetch(URL, Map.of());
+    }
+}
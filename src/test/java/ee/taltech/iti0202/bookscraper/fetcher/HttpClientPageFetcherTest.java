@@ -0,0 +1,92 @@
+package ee.taltech.iti0202.bookscraper.fetcher;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpClientPageFetcherTest {
+
+    private static final String BODY = "<html>My Hero Academia, Vol. 40</html>";
+
+    private HttpServer server;
+    private String baseUrl;
+    private final PageFetcher fetcher = new HttpClientPageFetcher();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/unavailable", exchange -> {
+            try (exchange) {
+                exchange.sendResponseHeaders(503, -1);
+            }
+        });
+        server.createContext("/gzip", exchange -> {
+            try (exchange) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (OutputStream out = new GZIPOutputStream(body)) {
+                    out.write(BODY.getBytes(StandardCharsets.UTF_8));
+                }
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, body.size());
+                exchange.getResponseBody().write(body.toByteArray());
+            }
+        });
+        server.createContext("/deflate", exchange -> {
+            try (exchange) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (OutputStream out = new DeflaterOutputStream(body)) {
+                    out.write(BODY.getBytes(StandardCharsets.UTF_8));
+                }
+                exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+                exchange.sendResponseHeaders(200, body.size());
+                exchange.getResponseBody().write(body.toByteArray());
+            }
+        });
+        server.start();
+        baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetcherThrowsTypedExceptionOnServiceUnavailable() {
+        FetchException e = assertThrows(FetchException.class, () -> fetcher.fetch(baseUrl + "/unavailable"));
+
+        assertEquals(FetchException.Reason.HTTP_STATUS, e.getReason());
+        assertEquals(503, e.getStatusCode());
+
+        FetchException streamError = assertThrows(FetchException.class,
+                () -> fetcher.openStream(baseUrl + "/unavailable"));
+        assertEquals(503, streamError.getStatusCode());
+    }
+
+    @Test
+    void fetcherDecodesGzipBody() throws FetchException {
+        Page page = fetcher.fetch(baseUrl + "/gzip");
+
+        assertEquals(200, page.statusCode());
+        assertEquals(BODY, page.body());
+        assertEquals("gzip", page.header("Content-Encoding"));
+    }
+
+    @Test
+    void fetcherDecodesDeflateBody() throws FetchException {
+        assertEquals(BODY, fetcher.fetch(baseUrl + "/deflate").body());
+    }
+}
@@ -0,0 +1,63 @@
+package ee.taltech.iti0202.bookscraper.frontier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    private static final int URLS = 10_000;
+
+    @TempDir
+    private Path directory;
+
+    private static String url(int i) {
+        return "https://www.apollo.ee/en/book-" + i + ".html";
+    }
+
+    @Test
+    void filterRemembersAddedValuesAfterReopening() throws IOException {
+        Path file = directory.resolve("frontier.bloom");
+
+        try (BloomFilter filter = BloomFilter.open(file, URLS, 0.01)) {
+            assertFalse(filter.isInitialized());
+            IntStream.range(0, URLS).parallel().forEach(i -> filter.add(url(i)));
+            filter.markInitialized();
+        }
+
+        try (BloomFilter filter = BloomFilter.open(file, 1, 0.5)) {
+            assertTrue(filter.isInitialized());
+            assertTrue(IntStream.range(0, URLS).allMatch(i -> filter.mightContain(url(i))));
+        }
+    }
+
+    @Test
+    void filterStaysUninitializedIfFillingWasInterrupted() throws IOException {
+        Path file = directory.resolve("frontier.bloom");
+
+        try (BloomFilter filter = BloomFilter.open(file, URLS, 0.01)) {
+            filter.add(url(0));
+        }
+
+        try (BloomFilter filter = BloomFilter.open(file, URLS, 0.01)) {
+            assertFalse(filter.isInitialized());
+            assertTrue(filter.mightContain(url(0)));
+        }
+    }
+
+    @Test
+    void filterKeepsFalsePositiveRateNearConfiguredValue() throws IOException {
+        try (BloomFilter filter = BloomFilter.open(directory.resolve("frontier.bloom"), URLS, 0.01)) {
+            IntStream.range(0, URLS).forEach(i -> filter.add(url(i)));
+
+            long falsePositives = IntStream.range(URLS, 2 * URLS).filter(i -> filter.mightContain(url(i))).count();
+            assertTrue(falsePositives < URLS * 0.02, "Too many false positives: " + falsePositives);
+        }
+    }
+}
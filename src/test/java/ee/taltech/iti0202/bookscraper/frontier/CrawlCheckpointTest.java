@@ -0,0 +1,68 @@
+package ee.taltech.iti0202.bookscraper.frontier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlCheckpointTest {
+
+    private static final String PAGE = "https://www.apollo.ee/en/raamatud/ingliskeelsed-raamatud/ilukirjandus?page=1";
+    private static final String BOOK = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void checkpointRestoresRecordsAndIgnoresTornLastLine() throws IOException {
+        Path file = directory.resolve("crawl.checkpoint");
+        try (CrawlCheckpoint checkpoint = CrawlCheckpoint.open(file)) {
+            checkpoint.markPageDone("FICTION", PAGE);
+            checkpoint.markBookDone("FICTION", BOOK);
+        }
+        Files.writeString(file, "B FICTION https://www.apollo.ee/en/half", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (CrawlCheckpoint checkpoint = CrawlCheckpoint.open(file)) {
+            assertTrue(checkpoint.isPageDone("FICTION", PAGE));
+            assertTrue(checkpoint.isBookDone("FICTION", BOOK));
+            assertFalse(checkpoint.isBookDone("FICTION", "https://www.apollo.ee/en/half"));
+
+            checkpoint.markBookDone("FICTION", "https://www.apollo.ee/en/next.html");
+        }
+
+        assertEquals(
+                "P FICTION " + PAGE + "\nB FICTION " + BOOK + "\nB FICTION https://www.apollo.ee/en/next.html\n",
+                Files.readString(file, StandardCharsets.UTF_8)
+        );
+    }
+
+    @Test
+    void clearingScopeKeepsRecordsOfOtherScopes() throws IOException {
+        Path file = directory.resolve("crawl.checkpoint");
+        try (CrawlCheckpoint checkpoint = CrawlCheckpoint.open(file)) {
+            checkpoint.markPageDone("FICTION", PAGE);
+            checkpoint.markBookDone("FICTION", BOOK);
+            checkpoint.markBookDone("HISTORY", BOOK);
+            checkpoint.clear("FICTION");
+
+            assertFalse(checkpoint.isPageDone("FICTION", PAGE));
+            assertFalse(checkpoint.isBookDone("FICTION", BOOK));
+            assertTrue(checkpoint.isBookDone("HISTORY", BOOK));
+        }
+
+        try (CrawlCheckpoint checkpoint = CrawlCheckpoint.open(file)) {
+            assertFalse(checkpoint.isPageDone("FICTION", PAGE));
+            assertTrue(checkpoint.isBookDone("HISTORY", BOOK));
+        }
+        assertEquals("B HISTORY " + BOOK + "\n", Files.readString(file, StandardCharsets.UTF_8));
+    }
+}
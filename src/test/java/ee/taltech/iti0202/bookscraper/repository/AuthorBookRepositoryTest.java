@@ -0,0 +1,296 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import ee.taltech.iti0202.bookscraper.models.Author;
+import ee.taltech.iti0202.bookscraper.models.Book;
+import ee.taltech.iti0202.bookscraper.models.BookGenre;
+import ee.taltech.iti0202.bookscraper.models.BookSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthorBookRepositoryTest {
+
+    /**
+     * Hibernate properties of a new in-memory H2 database in PostgreSQL mode
+     * @return properties
+     */
+    static Properties h2Properties() {
+        Properties properties = H2Properties.inMemory(UUID.randomUUID().toString());
+        properties.setProperty("hibernate.generate_statistics", "true");
+        return properties;
+    }
+
+    static Book book(String url, String firstName, String lastName) {
+        Book book = Book.builder()
+                .withTitle("My Hero Academia")
+                .withUrl(url)
+                .withGenre("Fiction")
+                .withPrice(11.49)
+                .withPages(192)
+                .build();
+        book.setAuthor(Author.builder().withFirstName(firstName).withLastName(lastName).build());
+        return book;
+    }
+
+    @Test
+    void saveAllStoresPageOfBooksWithSharedAuthorsInBatches() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        List<Book> page = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            page.add(book("https://www.apollo.ee/en/book-" + i + ".html", "Kohei", i % 2 == 0 ? "Horikoshi" : "Oda"));
+        }
+        repository.getStatistics().clear();
+
+        repository.saveAll(page);
+        long transactions = repository.getStatistics().getTransactionCount();
+        long statements = repository.getStatistics().getPrepareStatementCount();
+
+        assertEquals(60, repository.getAllBooks().size());
+        assertEquals(30, repository.getAuthorBooks(repository.getAuthorByNameAndSurname("Kohei", "Oda").get()).size());
+        assertEquals(1, transactions);
+        // One author query, a few sequence calls and batched inserts instead of a statement per row
+        assertTrue(statements < 10, "prepared statements: " + statements);
+    }
+
+    @Test
+    void saveAllReusesStoredAuthor() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        repository.saveAll(List.of(book("https://www.apollo.ee/en/book-1.html", "Kohei", "Horikoshi")));
+
+        repository.saveAll(List.of(book("https://www.apollo.ee/en/book-2.html", "Kohei", "Horikoshi")));
+
+        Author author = repository.getAuthorByNameAndSurname("Kohei", "Horikoshi").get();
+        assertEquals(2, repository.getAuthorBooks(author).size());
+    }
+
+    @Test
+    void saveAllLoadsOnlyAuthorsOfThePage() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        List<Book> stored = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            stored.add(book("https://www.apollo.ee/en/book-" + i + ".html", "Kohei", "Namesake " + i));
+        }
+        stored.add(book("https://www.apollo.ee/en/book-10.html", "Kohei", "Horikoshi"));
+        repository.saveAll(stored);
+        repository.getStatistics().clear();
+
+        repository.saveAll(List.of(book("https://www.apollo.ee/en/book-11.html", "Kohei", "Horikoshi")));
+
+        assertEquals(1, repository.getStatistics().getEntityLoadCount());
+        Author author = repository.getAuthorByNameAndSurname("Kohei", "Horikoshi").get();
+        assertEquals(2, repository.getAuthorBooks(author).size());
+    }
+
+    @Test
+    void saveAllDoesNotQueryAuthorsWithKnownId() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        int authorId = new AuthorCache(repository).getAuthorId("Kohei", "Horikoshi");
+        List<Book> page = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Book book = book("https://www.apollo.ee/en/book-" + i + ".html", "Kohei", "Horikoshi");
+            book.getAuthor().setId(authorId);
+            page.add(book);
+        }
+        repository.getStatistics().clear();
+
+        repository.saveAll(page);
+
+        assertEquals(0, repository.getStatistics().getQueryExecutionCount());
+        assertEquals(0, repository.getStatistics().getEntityLoadCount());
+        Author author = repository.getAuthorByNameAndSurname("Kohei", "Horikoshi").get();
+        assertEquals(authorId, author.getId());
+        assertEquals(5, repository.getAuthorBooks(author).size());
+    }
+
+    @Test
+    void getBooksByUrlsReturnsOnlyStoredBooks() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        repository.saveAll(List.of(
+                book("https://www.apollo.ee/en/book-1.html", "Kohei", "Horikoshi"),
+                book("https://www.apollo.ee/en/book-2.html", "Kohei", "Horikoshi")
+        ));
+        repository.getStatistics().clear();
+
+        List<Book> books = repository.getBooksByUrls(List.of(
+                "https://www.apollo.ee/en/book-2.html", "https://www.apollo.ee/en/book-3.html"
+        ));
+
+        assertEquals(List.of("https://www.apollo.ee/en/book-2.html"), books.stream().map(Book::getUrl).toList());
+        assertEquals(1, repository.getStatistics().getQueryExecutionCount());
+    }
+
+    @Test
+    void repeatedBookLookupIsAnsweredFromCache() {
+        Properties properties = h2Properties();
+        properties.setProperty(AuthorBookRepository.BOOK_CACHE_SIZE_PROPERTY, "100");
+        AuthorBookRepository repository = new AuthorBookRepository(properties);
+        repository.saveAll(List.of(book("https://www.apollo.ee/en/book-1.html", "Kohei", "Horikoshi")));
+        repository.getBookCache().clear();
+        repository.getStatistics().clear();
+
+        Book first = repository.getBookByUrl("https://www.apollo.ee/en/book-1.html").get();
+        Book second = repository.getBookByUrl("https://www.apollo.ee/en/book-1.html").get();
+
+        assertNotSame(first, second);
+        assertEquals(first.getId(), second.getId());
+        assertEquals(1, repository.getStatistics().getQueryExecutionCount());
+        assertEquals(1, repository.getBookCache().getHits());
+        assertEquals(100, repository.getBookCache().getMaximumSize());
+    }
+
+    @Test
+    void repositoryUsesConfiguredConnectionPoolAndReportsItsMetrics() {
+        Properties properties = h2Properties();
+        properties.setProperty("hibernate.hikari.maximumPoolSize", "4");
+        AuthorBookRepository repository = new AuthorBookRepository(properties);
+
+        repository.getAllBooks();
+
+        ConnectionPoolMetrics metrics = repository.getConnectionPoolMetrics().orElseThrow();
+        assertEquals(4, metrics.getMaxConnections());
+        assertEquals(0, metrics.getActiveConnections());
+        assertTrue(metrics.getAcquisitions() > 0);
+        assertEquals(0, metrics.getTimeouts());
+    }
+
+    @Test
+    void streamAndKeysetPagesReturnBooksInIdOrder() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        List<Book> stored = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            stored.add(book("https://www.apollo.ee/en/book-" + i + ".html", "Kohei", "Horikoshi"));
+        }
+        repository.saveAll(stored);
+        List<String> urls = stored.stream().map(Book::getUrl).toList();
+
+        try (Stream<Book> books = repository.streamBooksByGenre(BookGenre.FICTION)) {
+            List<Book> streamed = books.toList();
+            assertEquals(urls, streamed.stream().map(Book::getUrl).toList());
+            assertEquals("Kohei Horikoshi", streamed.getFirst().getAuthorName());
+        }
+        try (Stream<Book> books = repository.streamBooksByGenre(BookGenre.HISTORY)) {
+            assertEquals(0, books.count());
+        }
+
+        List<String> paged = new ArrayList<>();
+        int afterId = 0;
+        List<Book> page;
+        while (!(page = repository.getBooksByGenreAfter(BookGenre.FICTION, afterId, 10)).isEmpty()) {
+            page.forEach(book -> paged.add(book.getUrl()));
+            afterId = page.getLast().getId();
+        }
+        assertEquals(urls, paged);
+        assertEquals(5, repository.getBooksAfter(stored.get(19).getId(), 10).size());
+    }
+
+    @Test
+    void concurrentPageClaimsGetEveryPageOnce() {
+        String url = "https://www.apollo.ee/en/raamatud/ingliskeelsed-raamatud/ilukirjandus";
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        assertEquals(1, repository.claimNextPage(url));
+        Set<Integer> pages = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 32; i++) {
+                executor.submit(() -> pages.add(repository.claimNextPage(url)));
+            }
+        }
+
+        assertEquals(IntStream.rangeClosed(2, 33).boxed().collect(Collectors.toSet()), pages);
+        assertEquals(33, repository.getCurrentPageForUrl(url));
+    }
+
+    @Test
+    void failedPagesAreClaimedAgainBeforeNewOnes() {
+        String url = "https://www.apollo.ee/en/raamatud/ingliskeelsed-raamatud/ilukirjandus";
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        for (int i = 0; i < 3; i++) {
+            repository.claimNextPage(url);
+        }
+        repository.addFailedPage(url, 3);
+        repository.addFailedPage(url, 1);
+        repository.addFailedPage(url, 3);
+
+        assertEquals(1, repository.claimNextPage(url));
+        assertEquals(3, repository.claimNextPage(url));
+        assertEquals(4, repository.claimNextPage(url));
+    }
+
+    @Test
+    void pageIsSetOnlyIfItIsStillTheExpectedOne() {
+        String url = "https://www.apollo.ee/en/raamatud/ingliskeelsed-raamatud/ilukirjandus";
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        repository.addUrl(url);
+        repository.addUrl(url);
+
+        assertTrue(repository.compareAndSetPage(url, 1, 2));
+        assertFalse(repository.compareAndSetPage(url, 1, 5));
+        assertEquals(2, repository.getCurrentPageForUrl(url));
+    }
+
+    @Test
+    void upsertUpdatesStoredBookWithSameUrlInPlace() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        int authorId = new AuthorCache(repository).getAuthorId("Kohei", "Horikoshi");
+        Book book = book("https://www.apollo.ee/en/book-1.html", "Kohei", "Horikoshi");
+        book.getAuthor().setId(authorId);
+        repository.upsertBook(book);
+
+        Book rescraped = book("https://www.apollo.ee/en/book-1.html", "Kohei", "Horikoshi");
+        rescraped.getAuthor().setId(authorId);
+        rescraped.setPrice(9.99);
+        repository.upsertBook(rescraped);
+
+        assertEquals(book.getId(), rescraped.getId());
+        repository.getBookCache().clear();
+        List<Book> books = repository.getAllBooks();
+        assertEquals(1, books.size());
+        assertEquals(9.99, books.getFirst().getPrice());
+        assertEquals("Kohei Horikoshi", books.getFirst().getAuthorName());
+    }
+
+    @Test
+    void bookListsLoadAuthorsInTheSameQuery() {
+        AuthorBookRepository repository = new AuthorBookRepository(h2Properties());
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            books.add(book("https://www.apollo.ee/en/book-" + i + ".html", "Author", String.valueOf(i % 10)));
+        }
+        repository.saveAll(books);
+        repository.getStatistics().clear();
+
+        List<Book> genreBooks = repository.getBooksByGenre(BookGenre.FICTION);
+        List<Book> allBooks = repository.getAllBooks();
+        List<Book> authorBooks = repository.getAuthorBooks(genreBooks.getFirst().getAuthor());
+        List<BookSummary> summaries;
+        try (Stream<BookSummary> stream = repository.streamBookSummariesByGenre(BookGenre.FICTION)) {
+            summaries = stream.toList();
+        }
+
+        // One statement per list however many authors the books have
+        assertEquals(4, repository.getStatistics().getPrepareStatementCount());
+        assertEquals(20, genreBooks.size());
+        assertEquals(10, genreBooks.stream().map(Book::getAuthorName).distinct().count());
+        assertEquals(20, allBooks.size());
+        assertEquals(2, authorBooks.size());
+        assertEquals(
+                IntStream.range(0, 20).mapToObj(i -> "Author " + i % 10).toList(),
+                summaries.stream().map(BookSummary::authorName).toList()
+        );
+    }
+}
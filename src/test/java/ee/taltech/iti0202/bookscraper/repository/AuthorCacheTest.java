@@ -0,0 +1,70 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import ee.taltech.iti0202.bookscraper.models.Author;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuthorCacheTest {
+
+    @Test
+    void concurrentLookupsOfNewAuthorCreateItOnce() {
+        AuthorBookRepository repository = new AuthorBookRepository(AuthorBookRepositoryTest.h2Properties());
+        AuthorCache cache = new AuthorCache(repository);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 32; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    return ids.add(cache.getAuthorId("Kohei", "Horikoshi"));
+                });
+            }
+            start.countDown();
+        }
+
+        assertEquals(1, ids.size());
+        assertEquals(1, repository.getAllAuthors().size());
+    }
+
+    @Test
+    void warmedCacheDoesNotQueryKnownAuthors() {
+        AuthorBookRepository repository = new AuthorBookRepository(AuthorBookRepositoryTest.h2Properties());
+        Author author = Author.builder()
+                .withFirstName("Eiichiro")
+                .withLastName("Oda")
+                .withBooks(new ArrayList<>())
+                .build();
+        repository.addAuthor(author);
+        AuthorCache cache = new AuthorCache(repository);
+
+        assertEquals(1, cache.warmUp());
+        repository.getStatistics().clear();
+
+        assertEquals(author.getId(), cache.getAuthorId("Eiichiro", "Oda"));
+        assertEquals(0, repository.getStatistics().getPrepareStatementCount());
+    }
+
+    @Test
+    void failedLookupDoesNotCreateAuthorAndIsNotCached() {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Mockito.when(repository.getAuthorByNameAndSurname("Kohei", "Horikoshi"))
+                .thenThrow(new IllegalStateException("database is down"));
+        AuthorCache cache = new AuthorCache(repository);
+
+        assertThrows(IllegalStateException.class, () -> cache.getAuthorId("Kohei", "Horikoshi"));
+
+        Mockito.verify(repository, Mockito.never()).addAuthor(Mockito.any());
+        assertEquals(0, cache.size());
+    }
+}
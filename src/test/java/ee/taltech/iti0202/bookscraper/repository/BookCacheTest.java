@@ -0,0 +1,68 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import ee.taltech.iti0202.bookscraper.models.Book;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookCacheTest {
+
+    private static Book book(String url) {
+        return Book.builder().withTitle(url).withUrl(url).build();
+    }
+
+    @Test
+    void cacheEvictsLeastRecentlyUsedBook() {
+        BookCache cache = new BookCache(2);
+        Book first = book("first");
+        cache.put(first);
+        cache.put(book("second"));
+
+        assertEquals("first", cache.get("first").getTitle());
+        cache.put(book("third"));
+
+        assertEquals(2, cache.size());
+        assertEquals("first", cache.get("first").getTitle());
+        assertNull(cache.get("second"));
+    }
+
+    @Test
+    void cacheHandsOutCopiesOfItsBooks() {
+        BookCache cache = new BookCache(10);
+        Book book = book("first");
+        book.setPrice(10.0);
+        cache.put(book);
+        book.setPrice(12.0);
+
+        Book cached = cache.get("first");
+        cached.setPrice(15.0);
+
+        assertNotSame(book, cached);
+        assertEquals(10.0, cache.get("first").getPrice());
+    }
+
+    @Test
+    void cacheCountsHitsAndMisses() {
+        BookCache cache = new BookCache(10);
+        cache.put(book("first"));
+
+        cache.get("first");
+        cache.get("first");
+        cache.get("second");
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.getHitRate());
+    }
+
+    @Test
+    void cacheOfZeroSizeKeepsNothing() {
+        BookCache cache = new BookCache(0);
+        cache.put(book("first"));
+
+        assertNull(cache.get("first"));
+        assertEquals(0, cache.size());
+    }
+}
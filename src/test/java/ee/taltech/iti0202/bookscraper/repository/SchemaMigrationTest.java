@@ -0,0 +1,85 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import ee.taltech.iti0202.bookscraper.models.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigrationTest {
+
+    private static Connection connect(Properties properties) throws SQLException {
+        return DriverManager.getConnection(properties.getProperty("hibernate.connection.url"), "sa", "");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "SELECT * FROM book WHERE url = 'https://www.apollo.ee/en/book.html' | book_url_key",
+            "SELECT * FROM book WHERE genre = 'FICTION' | book_genre_idx",
+            "SELECT * FROM author WHERE first_name = 'Kohei' AND last_name = 'Horikoshi' | author_name_idx",
+            "SELECT page FROM url_page WHERE url = 'https://www.apollo.ee/en/fiction' | url_page_url_key"
+    })
+    void keyLookupsUseIndexes(String query, String index) throws SQLException {
+        Properties properties = AuthorBookRepositoryTest.h2Properties();
+        new AuthorBookRepository(properties);
+
+        try (Connection connection = connect(properties);
+             Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("EXPLAIN " + query)) {
+            plan.next();
+            assertTrue(plan.getString(1).contains(index), plan.getString(1));
+        }
+    }
+
+    @Test
+    void bookUrlIsUnique() {
+        AuthorBookRepository repository = new AuthorBookRepository(AuthorBookRepositoryTest.h2Properties());
+        repository.saveAll(List.of(AuthorBookRepositoryTest.book("https://www.apollo.ee/en/book.html", "A", "B")));
+
+        assertThrows(RuntimeException.class, () -> repository.saveAll(
+                List.of(AuthorBookRepositoryTest.book("https://www.apollo.ee/en/book.html", "A", "B"))
+        ));
+    }
+
+    @Test
+    void databaseCreatedBeforeSchemaManagementIsMigrated() throws SQLException {
+        Properties properties = AuthorBookRepositoryTest.h2Properties();
+        try (Connection connection = connect(properties); Statement statement = connection.createStatement()) {
+            // Tables as PostgreSQL created them for serial ids, with duplicates stored by concurrent crawls
+            statement.execute("CREATE SEQUENCE author_id_seq");
+            statement.execute("CREATE SEQUENCE book_id_seq");
+            statement.execute("CREATE TABLE author (id INTEGER DEFAULT nextval('author_id_seq') PRIMARY KEY, "
+                    + "first_name VARCHAR(255), last_name VARCHAR(255))");
+            statement.execute("CREATE TABLE book (id INTEGER DEFAULT nextval('book_id_seq') PRIMARY KEY, "
+                    + "author_id INTEGER REFERENCES author (id), title VARCHAR(255), language VARCHAR(255), "
+                    + "publisher VARCHAR(255), url VARCHAR(255), published_at VARCHAR(255), pages INTEGER, "
+                    + "price DOUBLE PRECISION, format VARCHAR(255), genre VARCHAR(255))");
+            statement.execute("CREATE TABLE url_page (url VARCHAR(255), page INTEGER)");
+            statement.execute("INSERT INTO book (title, url) VALUES ('Old', 'https://www.apollo.ee/en/old.html'), "
+                    + "('Copy', 'https://www.apollo.ee/en/old.html'), ('Other', 'https://www.apollo.ee/en/other.html')");
+            statement.execute("INSERT INTO url_page VALUES ('https://www.apollo.ee/en/fiction', 2), "
+                    + "('https://www.apollo.ee/en/fiction', 3)");
+        }
+
+        AuthorBookRepository repository = new AuthorBookRepository(properties);
+        repository.saveAll(List.of(AuthorBookRepositoryTest.book("https://www.apollo.ee/en/new.html", "A", "B")));
+
+        // The copy is gone and the new book didn't collide with ids given by the old sequence
+        assertEquals(
+                List.of("My Hero Academia", "Old", "Other"),
+                repository.getAllBooks().stream().map(Book::getTitle).sorted().toList()
+        );
+        assertEquals(3, repository.getCurrentPageForUrl("https://www.apollo.ee/en/fiction"));
+    }
+}
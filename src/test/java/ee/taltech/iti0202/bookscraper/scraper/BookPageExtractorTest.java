@@ -0,0 +1,96 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.models.Author;
+import ee.taltech.iti0202.bookscraper.models.Book;
+import ee.taltech.iti0202.bookscraper.models.BookGenre;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookPageExtractorTest {
+
+    private static final String URL = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+
+    private static String productPage;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        try (InputStream in = BookPageExtractorTest.class.getResourceAsStream("/pages/product.html")) {
+            productPage = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static Stream<Arguments> extractors() {
+        return Stream.of(
+                Arguments.of(new DomBookPageExtractor()),
+                Arguments.of(new SinglePassBookPageExtractor()),
+                Arguments.of(new StreamingBookPageExtractor())
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("extractors")
+    void extractorReadsAllFieldsFromProductSection(BookPageExtractor extractor) {
+        Book book = extractor.extract(productPage, URL);
+
+        assertEquals("My Hero Academia, Vol. 40", book.getTitle());
+        assertEquals("Viz Media", book.getPublisher());
+        assertEquals("Paperback", book.getFormat());
+        assertEquals("English", book.getLanguage());
+        assertEquals("2024", book.getPublishedAt());
+        assertEquals(192, book.getPages());
+        assertEquals(11.49, book.getPrice());
+        assertEquals(BookGenre.FICTION, book.getGenre());
+        assertEquals(URL, book.getUrl());
+        assertEquals("Kohei", book.getAuthor().getFirstName());
+        assertEquals("Horikoshi", book.getAuthor().getLastName());
+    }
+
+    @ParameterizedTest
+    @MethodSource("extractors")
+    void extractorReadsFieldsWithNestedMarkup(BookPageExtractor extractor) {
+        String html = productPage
+                .replace(">Fiction</a></li>", "><span>Fiction</span></a></li>")
+                .replace("<td id=\"meta-publisher\">Viz Media</td>",
+                        "<td id=\"meta-publisher\"><span><b>Viz</b> Media</span></td>");
+
+        Book book = extractor.extract(html, URL);
+
+        assertEquals(BookGenre.FICTION, book.getGenre());
+        assertEquals("Viz Media", book.getPublisher());
+        assertEquals("My Hero Academia, Vol. 40", book.getTitle());
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {
+            "Kohei Horikoshi|Kohei|Horikoshi",
+            "Buronson, Tetsuo Hara|Buronson|Tetsuo Hara",
+            "Homer|Homer|''",
+            "''|''|''"
+    }, delimiter = '|')
+    void singlePassAuthorParsingMatchesDomExtractor(String fullName, String firstName, String lastName) {
+        Author expected = DomBookPageExtractor.parseAuthor(fullName);
+        Author actual = SinglePassBookPageExtractor.parseAuthor(fullName);
+
+        assertEquals(firstName, expected.getFirstName());
+        assertEquals(lastName, expected.getLastName());
+        assertEquals(expected.getFirstName(), actual.getFirstName());
+        assertEquals(expected.getLastName(), actual.getLastName());
+    }
+
+    @ParameterizedTest
+    @MethodSource("extractors")
+    void extractorReturnsNullWithoutProductSection(BookPageExtractor extractor) {
+        assertNull(extractor.extract("<html><body><p>Not found</p></body></html>", URL));
+    }
+}
@@ -0,0 +1,438 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.fetcher.DiskPageStore;
+import ee.taltech.iti0202.bookscraper.fetcher.FetchException;
+import ee.taltech.iti0202.bookscraper.fetcher.FixtureServer;
+import ee.taltech.iti0202.bookscraper.fetcher.Page;
+import ee.taltech.iti0202.bookscraper.fetcher.ReplayPageFetcher;
+import ee.taltech.iti0202.bookscraper.frontier.CrawlCheckpoint;
+import ee.taltech.iti0202.bookscraper.frontier.UrlFrontier;
+import ee.taltech.iti0202.bookscraper.models.Author;
+import ee.taltech.iti0202.bookscraper.models.Book;
+import ee.taltech.iti0202.bookscraper.models.BookGenre;
+import ee.taltech.iti0202.bookscraper.repository.AuthorBookRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScraperReplayTest {
+
+    static final String PAGE_URL = "https://www.apollo.ee/en/raamatud/ingliskeelsed-raamatud/ilukirjandus";
+
+    @TempDir
+    static Path archive;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        recordFixtures(archive);
+    }
+
+    /**
+     * Put the test pages into an archive the way RecordingPageFetcher would
+     * @param archive archive directory
+     * @throws IOException if a fixture can't be read
+     */
+    static void recordFixtures(Path archive) throws IOException {
+        DiskPageStore store = new DiskPageStore(archive);
+        store.save(fixture(PAGE_URL + "?page=1", "listing.html"));
+        store.save(fixture("https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html",
+                "product-ruination.html"));
+        store.save(fixture("https://www.apollo.ee/en/my-hero-academia-vol-40.html", "product.html"));
+    }
+
+    private static Page fixture(String url, String name) throws IOException {
+        try (InputStream in = ScraperReplayTest.class.getResourceAsStream("/pages/" + name)) {
+            return new Page(url, 200, new String(in.readAllBytes(), StandardCharsets.UTF_8), Map.of());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ProcessingType.class, names = "SHALLOW", mode = EnumSource.Mode.EXCLUDE)
+    void scraperGetsBooksPageFromArchive(ProcessingType processingType) {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        List<Book> books = scraper.getSingleBookPage(PAGE_URL, 1, 0, processingType);
+
+        assertEquals(
+                List.of("Ruination: A League of Legends Novel", "My Hero Academia, Vol. 40"),
+                books.stream().map(Book::getTitle).toList()
+        );
+        if (processingType == ProcessingType.VIRTUAL_THREADS) {
+            Mockito.verify(repository).saveAll(books);
+            Mockito.verify(repository, Mockito.never()).addBookToAuthor(Mockito.anyInt(), Mockito.any());
+        } else {
+            Mockito.verify(repository, Mockito.times(2)).upsertBook(Mockito.any());
+        }
+    }
+
+    @Test
+    void scraperUpsertsBooksOneByOneIfPageCanNotBeSavedAtOnce() {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Author storedAuthor = Author.builder().withFirstName("Kohei").withLastName("Horikoshi").build();
+        storedAuthor.setId(7);
+        Mockito.when(repository.getAuthorByNameAndSurname(Mockito.any(), Mockito.any()))
+                .thenReturn(Optional.of(storedAuthor));
+        Mockito.doThrow(new IllegalStateException("duplicate url")).when(repository).saveAll(Mockito.any());
+        Mockito.doThrow(new IllegalStateException("database is down")).when(repository).upsertBook(
+                Mockito.argThat(book -> book.getUrl().endsWith("ruination-a-league-of-legends-novel.html")));
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        List<Book> books = scraper.getSingleBookPage(PAGE_URL, 1, 0, ProcessingType.VIRTUAL_THREADS);
+
+        assertEquals(List.of("My Hero Academia, Vol. 40"), books.stream().map(Book::getTitle).toList());
+        assertEquals(7, books.getFirst().getAuthor().getId());
+        Mockito.verify(repository, Mockito.times(2)).upsertBook(Mockito.any());
+    }
+
+    @Test
+    void crawledBatchIsLookedUpAndSavedTogether() throws IOException {
+        List<String> urls = List.of(
+                "https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html",
+                "https://www.apollo.ee/en/my-hero-academia-vol-40.html",
+                "https://www.apollo.ee/en/missing-book.html"
+        );
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        try (CrawlCheckpoint checkpoint = CrawlCheckpoint.open(archive.resolve("batch.checkpoint"))) {
+            scraper.setCheckpoint(checkpoint);
+            List<Book> books = scraper.crawlBooks(BookGenre.FICTION, urls);
+
+            assertEquals(urls.subList(0, 2), books.stream().map(Book::getUrl).toList());
+            assertTrue(scraper.isBookDone(BookGenre.FICTION, urls.get(1)));
+            assertFalse(scraper.isBookDone(BookGenre.FICTION, urls.get(2)));
+            Mockito.verify(repository).getBooksByUrls(urls);
+            Mockito.verify(repository).saveAll(books);
+            Mockito.verify(repository, Mockito.never()).getBookByUrl(Mockito.any());
+            Mockito.verify(repository, Mockito.never()).upsertBook(Mockito.any());
+        }
+    }
+
+    @Test
+    void scraperRecordsPageAsFailedIfStoredBooksCanNotBeLookedUp() {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Mockito.when(repository.claimNextPage(PAGE_URL)).thenReturn(1);
+        Mockito.when(repository.getBooksByUrls(Mockito.any())).thenThrow(new IllegalStateException("database is down"));
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        assertNull(scraper.getSingleBookPage(PAGE_URL, 0, 0, ProcessingType.VIRTUAL_THREADS));
+
+        Mockito.verify(repository).addFailedPage(PAGE_URL, 1);
+        Mockito.verify(repository, Mockito.never())
+                .compareAndSetPage(Mockito.any(), Mockito.anyInt(), Mockito.anyInt());
+        Mockito.verify(repository, Mockito.never()).saveAll(Mockito.any());
+        Mockito.verify(repository, Mockito.never()).upsertBook(Mockito.any());
+    }
+
+    @Test
+    void scraperLooksUpStoredBooksOfPageWithOneQueryBeforeFetching() {
+        String known = "https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html";
+        Book stored = Book.builder().withTitle("Ruination").withUrl(known).build();
+        stored.setId(1);
+        stored.setLastScrapedAt(Instant.now());
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Mockito.when(repository.getBooksByUrls(Mockito.anyCollection())).thenReturn(List.of(stored));
+        List<String> fetched = new CopyOnWriteArrayList<>();
+        ReplayPageFetcher replay = new ReplayPageFetcher(archive);
+        Scraper scraper = new Scraper(repository, (url, headers) -> {
+            fetched.add(url);
+            return replay.fetch(url, headers);
+        });
+
+        List<Book> books = scraper.getSingleBookPage(PAGE_URL, 1, 0, ProcessingType.VIRTUAL_THREADS);
+
+        assertEquals(List.of("Ruination", "My Hero Academia, Vol. 40"), books.stream().map(Book::getTitle).toList());
+        assertEquals(List.of(PAGE_URL + "?page=1", "https://www.apollo.ee/en/my-hero-academia-vol-40.html"), fetched);
+        Mockito.verify(repository).getBooksByUrls(
+                List.of(known, "https://www.apollo.ee/en/my-hero-academia-vol-40.html")
+        );
+        Mockito.verify(repository, Mockito.never()).getBookByUrl(Mockito.any());
+    }
+
+    @Test
+    void scraperBuildsPartialBooksFromListingCardsInShallowMode() {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        List<String> fetched = new CopyOnWriteArrayList<>();
+        ReplayPageFetcher replay = new ReplayPageFetcher(archive);
+        Scraper scraper = new Scraper(repository, (url, headers) -> {
+            fetched.add(url);
+            return replay.fetch(url, headers);
+        });
+
+        List<Book> books = scraper.getSingleBookPage(PAGE_URL, 1, 0, ProcessingType.SHALLOW);
+
+        assertEquals(List.of(PAGE_URL + "?page=1"), fetched);
+        assertEquals(2, books.size());
+        assertTrue(books.getFirst().isPartial());
+        assertEquals("Ruination: A League of Legends Novel", books.getFirst().getTitle());
+        assertEquals(10.99, books.getFirst().getPrice());
+        assertEquals(BookGenre.FICTION, books.getFirst().getGenre());
+        Mockito.verify(repository).saveAll(books);
+        Mockito.verify(repository, Mockito.never()).addBook(Mockito.any());
+    }
+
+    @Test
+    void shallowPageKeepsStoredBookIfNewPriceCanNotBeSaved() {
+        String url = "https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html";
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Book stored = Book.builder().withTitle("Ruination: A League of Legends Novel").withUrl(url).withPrice(15)
+                .build();
+        Mockito.when(repository.getBooksByUrls(Mockito.any())).thenReturn(List.of(stored));
+        Mockito.doThrow(new IllegalStateException("database is down")).when(repository).updateBook(Mockito.any());
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        List<Book> books = scraper.getSingleBookPage(PAGE_URL, 1, 0, ProcessingType.SHALLOW);
+
+        assertEquals(2, books.size());
+        assertSame(stored, books.getFirst());
+        assertEquals(15.0, stored.getPrice());
+        Mockito.verify(repository).updateBook(Mockito.argThat(book -> book.getPrice() == 10.99));
+    }
+
+    @Test
+    void scraperLoadsMissingDetailsOfPartialBook() {
+        String url = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Book partial = Book.builder().withTitle("My Hero Academia, Vol. 40").withUrl(url).withPartial(true).build();
+        Mockito.when(repository.getBookByUrl(url)).thenReturn(Optional.of(partial));
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        Book book = scraper.getBookByUrl(url);
+
+        assertFalse(book.isPartial());
+        assertEquals("Viz Media", book.getPublisher());
+        assertTrue(partial.isPartial());
+        Mockito.verify(repository).addBookToAuthor(Mockito.anyInt(), Mockito.eq(book));
+    }
+
+    @Test
+    void scraperServesStaleBookAndRefreshesItInBackground() {
+        String url = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Book stale = Book.builder().withTitle("My Hero Academia, Vol. 40").withUrl(url).withPrice(15).build();
+        stale.setLastScrapedAt(Instant.now().minus(Duration.ofDays(2)));
+        Mockito.when(repository.getBookByUrl(url)).thenReturn(Optional.of(stale));
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+        scraper.setRefreshTtl(Duration.ofDays(1));
+
+        assertEquals(stale, scraper.getBookByUrl(url));
+
+        Mockito.verify(repository, Mockito.timeout(5000)).updateBook(Mockito.argThat(book ->
+                url.equals(book.getUrl()) && book.getPrice() == 11.49));
+        assertEquals(15.0, stale.getPrice());
+    }
+
+    @Test
+    void scraperLoadsOnlyNewAndChangedBooksFromSitemap() {
+        String known = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+        String unknown = "https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html";
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Book fresh = Book.builder().withTitle("My Hero Academia, Vol. 40").withUrl(known).build();
+        fresh.setLastScrapedAt(Instant.parse("2024-06-01T00:00:00Z"));
+        Mockito.when(repository.getBookByUrl(known)).thenReturn(Optional.of(fresh));
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+        SitemapReader sitemapReader = new SitemapReader(url -> InputStream.nullInputStream(), url -> true) {
+            @Override
+            public int read(String sitemapUrl, Consumer<SitemapEntry> consumer) {
+                consumer.accept(new SitemapEntry(known, Instant.parse("2024-05-01T00:00:00Z")));
+                consumer.accept(new SitemapEntry(unknown, Instant.parse("2024-05-01T00:00:00Z")));
+                return 2;
+            }
+        };
+        List<Book> books = new CopyOnWriteArrayList<>();
+
+        int loaded = scraper.crawlSitemap(sitemapReader, "https://www.apollo.ee/sitemap.xml", books::add);
+
+        assertEquals(1, loaded);
+        assertEquals("Ruination: A League of Legends Novel", books.getFirst().getTitle());
+        Mockito.verify(repository, Mockito.never()).updateBook(fresh);
+    }
+
+    @Test
+    void scraperReadsSitemapThroughFetcherAndKeepsGoingAfterFailedBook(@TempDir Path directory)
+            throws IOException {
+        String failing = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+        String unknown = "https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html";
+        String sitemapUrl = "https://www.apollo.ee/sitemap.xml";
+        recordFixtures(directory);
+        new DiskPageStore(directory).save(new Page(sitemapUrl, 200, """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                    <url><loc>%s</loc></url>
+                    <url><loc>%s</loc></url>
+                </urlset>
+                """.formatted(failing, unknown), Map.of()));
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Mockito.when(repository.getBookByUrl(failing)).thenThrow(new IllegalStateException("database is down"));
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(directory));
+        List<Book> books = new CopyOnWriteArrayList<>();
+
+        int loaded = scraper.crawlSitemap(sitemapUrl, books::add);
+
+        assertEquals(1, loaded);
+        assertEquals(unknown, books.getFirst().getUrl());
+    }
+
+    @Test
+    void scraperSkipsDatabaseForUrlsUnknownToFrontier(@TempDir Path directory) throws IOException {
+        String url = "https://www.apollo.ee/en/my-hero-academia-vol-40.html";
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        try (UrlFrontier frontier = UrlFrontier.open(directory.resolve("frontier.bloom"))) {
+            scraper.setFrontier(frontier);
+
+            assertEquals("My Hero Academia, Vol. 40", scraper.getBookByUrl(url).getTitle());
+
+            Mockito.verify(repository, Mockito.never()).getBookByUrl(url);
+            assertTrue(frontier.mightBeKnown(url));
+        }
+    }
+
+    @Test
+    void scraperCrawlsGenreUntilPageWithoutBooks() throws FetchException {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+        List<Book> books = new ArrayList<>();
+
+        int pages = scraper.crawlGenre(BookGenre.FICTION, ProcessingType.VIRTUAL_THREADS, books::addAll);
+
+        assertEquals(1, pages);
+        assertEquals(2, books.size());
+    }
+
+    @Test
+    void scraperResumesCrawlFromCheckpoint(@TempDir Path directory) throws IOException, FetchException {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+        List<Book> books = new ArrayList<>();
+
+        try (CrawlCheckpoint checkpoint = CrawlCheckpoint.open(directory.resolve("crawl.checkpoint"))) {
+            checkpoint.markBookDone("FICTION", "https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html");
+            checkpoint.markBookDone("HISTORY", "https://www.apollo.ee/en/my-hero-academia-vol-40.html");
+            scraper.setCheckpoint(checkpoint);
+
+            scraper.crawlGenre(BookGenre.FICTION, ProcessingType.VIRTUAL_THREADS, books::addAll);
+
+            assertEquals(List.of("My Hero Academia, Vol. 40"), books.stream().map(Book::getTitle).toList());
+            assertTrue(checkpoint.isPageDone("FICTION", PAGE_URL + "?page=1"));
+            assertTrue(checkpoint.isBookDone("FICTION", "https://www.apollo.ee/en/my-hero-academia-vol-40.html"));
+        }
+    }
+
+    @Test
+    void singleBookPageIsNotRecordedInCheckpoint(@TempDir Path directory) throws IOException {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+
+        try (CrawlCheckpoint checkpoint = CrawlCheckpoint.open(directory.resolve("crawl.checkpoint"))) {
+            scraper.setCheckpoint(checkpoint);
+
+            assertEquals(2, scraper.getSingleBookPage(PAGE_URL, 1, 0, ProcessingType.SYNCHRONIZED).size());
+
+            assertFalse(checkpoint.isBookDone("FICTION", "https://www.apollo.ee/en/my-hero-academia-vol-40.html"));
+        }
+    }
+
+    @Test
+    void scraperReportsListingPageWhichCanNotBeLoaded() {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        ReplayPageFetcher replay = new ReplayPageFetcher(archive);
+        Scraper scraper = new Scraper(repository, (url, headers) -> {
+            if (url.endsWith("?page=2")) {
+                throw new FetchException(url, 503);
+            }
+            return replay.fetch(url, headers);
+        });
+        List<Book> books = new ArrayList<>();
+
+        FetchException e = assertThrows(FetchException.class,
+                () -> scraper.crawlGenre(BookGenre.FICTION, ProcessingType.VIRTUAL_THREADS, books::addAll));
+
+        assertEquals(503, e.getStatusCode());
+        assertEquals(2, books.size());
+
+        Map<BookGenre, GenreCrawlReport> reports = new CrawlScheduler(scraper, 4)
+                .crawl(List.of(BookGenre.FICTION), report -> { });
+        assertFalse(reports.get(BookGenre.FICTION).complete());
+        assertEquals(2, reports.get(BookGenre.FICTION).books());
+    }
+
+    @Test
+    void schedulerCrawlsGenresAndReportsEachOfThem() {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive));
+        List<GenreCrawlReport> finished = new CopyOnWriteArrayList<>();
+
+        Map<BookGenre, GenreCrawlReport> reports = new CrawlScheduler(scraper, 4)
+                .crawl(List.of(BookGenre.FICTION, BookGenre.HISTORY), finished::add);
+
+        assertEquals(2, finished.size());
+        assertEquals(1, reports.get(BookGenre.FICTION).pages());
+        assertEquals(2, reports.get(BookGenre.FICTION).books());
+        assertEquals(0, reports.get(BookGenre.HISTORY).pages());
+        assertEquals(0, reports.get(BookGenre.HISTORY).books());
+        assertTrue(reports.get(BookGenre.FICTION).complete());
+    }
+
+    @Test
+    void concurrentCrawlsOfOneSchedulerDoNotShareQueues() throws Exception {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+        Scraper scraper = new Scraper(repository, new ReplayPageFetcher(archive, Duration.ofMillis(5)));
+        CrawlScheduler scheduler = new CrawlScheduler(scraper, 2);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Map<BookGenre, GenreCrawlReport>> fiction =
+                    executor.submit(() -> scheduler.crawl(List.of(BookGenre.FICTION), report -> { }));
+            Future<Map<BookGenre, GenreCrawlReport>> history =
+                    executor.submit(() -> scheduler.crawl(List.of(BookGenre.HISTORY), report -> { }));
+
+            assertEquals(2, fiction.get().get(BookGenre.FICTION).books());
+            assertEquals(Set.of(BookGenre.FICTION), fiction.get().keySet());
+            assertEquals(Set.of(BookGenre.HISTORY), history.get().keySet());
+        }
+    }
+
+    @Test
+    void scraperGetsBooksPageFromFixtureServer() {
+        AuthorBookRepository repository = Mockito.mock(AuthorBookRepository.class);
+
+        try (FixtureServer server = new FixtureServer(archive, "https://www.apollo.ee", Duration.ofMillis(5))) {
+            Scraper scraper = new Scraper(repository, server.fetcher());
+
+            List<Book> books = scraper.getSingleBookPage(PAGE_URL, 1, 1, ProcessingType.VIRTUAL_THREADS);
+
+            assertEquals(1, books.size());
+            assertEquals("Ruination: A League of Legends Novel", books.getFirst().getTitle());
+            assertEquals(10.99, books.getFirst().getPrice());
+        }
+    }
+}
@@ -77,14 +77,14 @@ class ScraperTest {
                .withGenre("Fiction")
                .build();
 
-       Mockito.when(repository.getBooksByGenre(BookGenre.FICTION)).thenReturn(List.of(book));
+       Mockito.when(repository.getBooksByGenreAfter(BookGenre.FICTION, 0, Scraper.BOOK_PAGE_SIZE))
+               .thenReturn(List.of(book));
 
-       assertEquals(
-               List.of(book),
-               scraper.getBooksByGenre(BookGenre.FICTION)
-       );
+       List<Book> books = new ArrayList<>();
+       assertEquals(1, scraper.forEachBookByGenre(BookGenre.FICTION, books::add));
+       assertEquals(List.of(book), books);
 
-       Mockito.verify(repository, Mockito.atLeastOnce()).getBooksByGenre(BookGenre.FICTION);
+       Mockito.verify(repository, Mockito.never()).getBooksByGenre(BookGenre.FICTION);
    }
 
    @Test
@@ -151,13 +151,22 @@ class ScraperTest {
                .withTitle("Fist of the North Star, Vol. 16")
                .build();
 
-       Mockito.when(repository.getAllBooks()).thenReturn(List.of(book));
-
-       assertEquals(
-               List.of(book),
-               scraper.getAllBooks()
-       );
-
-       Mockito.verify(repository, Mockito.atLeastOnce()).getAllBooks();
+       book.setId(Scraper.BOOK_PAGE_SIZE);
+       List<Book> fullPage = new ArrayList<>();
+       for (int i = 1; i < Scraper.BOOK_PAGE_SIZE; i++) {
+           Book stored = Book.builder().withTitle("Book " + i).build();
+           stored.setId(i);
+           fullPage.add(stored);
+       }
+       fullPage.add(book);
+       Book next = Book.builder().withTitle("Fist of the North Star, Vol. 17").build();
+       Mockito.when(repository.getBooksAfter(0, Scraper.BOOK_PAGE_SIZE)).thenReturn(fullPage);
+       Mockito.when(repository.getBooksAfter(Scraper.BOOK_PAGE_SIZE, Scraper.BOOK_PAGE_SIZE)).thenReturn(List.of(next));
+
+       List<Book> books = new ArrayList<>();
+       assertEquals(Scraper.BOOK_PAGE_SIZE + 1, scraper.forEachBook(books::add));
+       assertEquals(List.of(book, next), books.subList(Scraper.BOOK_PAGE_SIZE - 1, books.size()));
+
+       Mockito.verify(repository, Mockito.never()).getAllBooks();
    }
 }
@@ -0,0 +1,162 @@
+package ee.taltech.iti0202.bookscraper.scraper;
+
+import ee.taltech.iti0202.bookscraper.fetcher.FetchException;
+import ee.taltech.iti0202.bookscraper.fetcher.Page;
+import ee.taltech.iti0202.bookscraper.fetcher.PageFetcher;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SitemapReaderTest {
+
+    private static final String INDEX = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                <sitemap><loc>https://www.apollo.ee/sitemap-products.xml.gz</loc></sitemap>
+                <sitemap><loc>https://www.apollo.ee/sitemap-missing.xml</loc></sitemap>
+            </sitemapindex>
+            """;
+
+    private static final String PRODUCTS = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                <url>
+                    <loc>https://www.apollo.ee/en/my-hero-academia-vol-40.html</loc>
+                    <lastmod>2024-05-01T10:15:00+03:00</lastmod>
+                </url>
+                <url>
+                    <loc>https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html</loc>
+                </url>
+                <url>
+                    <loc>https://www.apollo.ee/en/raamatud</loc>
+                    <lastmod>2024-05-01</lastmod>
+                </url>
+            </urlset>
+            """;
+
+    @Test
+    void readerFollowsIndexIntoGzipSitemapAndFiltersUrls() {
+        Map<String, byte[]> files = Map.of(
+                "https://www.apollo.ee/sitemap.xml", INDEX.getBytes(StandardCharsets.UTF_8),
+                "https://www.apollo.ee/sitemap-products.xml.gz", gzip(PRODUCTS)
+        );
+        SitemapReader reader = new SitemapReader(url -> {
+            if (!files.containsKey(url)) {
+                throw new FetchException(url, 404);
+            }
+            return new ByteArrayInputStream(files.get(url));
+        }, url -> url.endsWith(".html"));
+        List<SitemapEntry> entries = new ArrayList<>();
+
+        int reported = reader.read("https://www.apollo.ee/sitemap.xml", entries::add);
+
+        assertEquals(2, reported);
+        assertEquals(List.of(
+                new SitemapEntry("https://www.apollo.ee/en/my-hero-academia-vol-40.html",
+                        Instant.parse("2024-05-01T07:15:00Z")),
+                new SitemapEntry("https://www.apollo.ee/en/ruination-a-league-of-legends-novel.html", null)
+        ), entries);
+    }
+
+    private static final String SELF_REFERENCING_INDEX = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                <sitemap><loc>https://www.apollo.ee/sitemap.xml</loc></sitemap>
+                <sitemap><loc>https://www.apollo.ee/sitemap-products.xml</loc></sitemap>
+                <sitemap><loc>https://www.apollo.ee/sitemap-products.xml</loc></sitemap>
+            </sitemapindex>
+            """;
+
+    @Test
+    void readerReadsEverySitemapOnceIfIndexRefersToItself() {
+        Map<String, String> files = Map.of(
+                "https://www.apollo.ee/sitemap.xml", SELF_REFERENCING_INDEX,
+                "https://www.apollo.ee/sitemap-products.xml", PRODUCTS
+        );
+        List<String> opened = new ArrayList<>();
+        SitemapReader reader = new SitemapReader(url -> {
+            opened.add(url);
+            return new ByteArrayInputStream(files.get(url).getBytes(StandardCharsets.UTF_8));
+        }, url -> url.endsWith(".html"));
+
+        int reported = reader.read("https://www.apollo.ee/sitemap.xml", entry -> { });
+
+        assertEquals(2, reported);
+        assertEquals(List.of("https://www.apollo.ee/sitemap.xml", "https://www.apollo.ee/sitemap-products.xml"),
+                opened);
+    }
+
+    private static final String PRODUCTS_WITH_IMAGES = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9"
+                    xmlns:image="http://www.google.com/sitemaps/schemas/image/1.1">
+                <url>
+                    <loc>https://www.apollo.ee/en/my-hero-academia-vol-40.html</loc>
+                    <image:image>
+                        <image:loc>https://www.apollo.ee/media/catalog/product/my-hero-academia-vol-40.jpg</image:loc>
+                        <image:title>My Hero Academia, Vol. 40</image:title>
+                    </image:image>
+                    <lastmod>2024-05-01</lastmod>
+                </url>
+                <url>
+                    <image:image>
+                        <image:loc>https://www.apollo.ee/en/image-only.html</image:loc>
+                    </image:image>
+                </url>
+            </urlset>
+            """;
+
+    @Test
+    void readerSkipsLocOfImageExtension() {
+        SitemapReader reader = new SitemapReader(
+                url -> new ByteArrayInputStream(PRODUCTS_WITH_IMAGES.getBytes(StandardCharsets.UTF_8)),
+                url -> url.endsWith(".html")
+        );
+        List<SitemapEntry> entries = new ArrayList<>();
+
+        int reported = reader.read("https://www.apollo.ee/sitemap-products.xml", entries::add);
+
+        assertEquals(1, reported);
+        assertEquals(List.of(new SitemapEntry("https://www.apollo.ee/en/my-hero-academia-vol-40.html",
+                Instant.parse("2024-05-01T00:00:00Z"))), entries);
+    }
+
+    @Test
+    void readerStreamsSitemapThroughFetcherAndKeepsEnglishProductPages() {
+        PageFetcher fetcher = (url, headers) -> new Page(url, 200, PRODUCTS, Map.of());
+        List<SitemapEntry> entries = new ArrayList<>();
+
+        int reported = new SitemapReader(fetcher).read("https://www.apollo.ee/sitemap-products.xml", entries::add);
+
+        assertEquals(2, reported);
+        assertEquals("https://www.apollo.ee/en/my-hero-academia-vol-40.html", entries.getFirst().url());
+    }
+
+    @Test
+    void readerParsesDateOnlyLastModified() {
+        assertEquals(Instant.parse("2024-05-01T00:00:00Z"), SitemapReader.parseLastModified("2024-05-01"));
+        assertNull(SitemapReader.parseLastModified("yesterday"));
+    }
+
+    private static byte[] gzip(String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
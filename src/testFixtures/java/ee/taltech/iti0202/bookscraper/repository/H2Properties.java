@@ -0,0 +1,29 @@
+package ee.taltech.iti0202.bookscraper.repository;
+
+import java.util.Properties;
+
+/**
+ * Hibernate properties of in-memory H2 databases, shared by tests and benchmarks
+ */
+public final class H2Properties {
+
+    private H2Properties() {
+    }
+
+    /**
+     * Hibernate properties of an in-memory H2 database in PostgreSQL mode.
+     * The schema is created by the repository's migrations and only validated by Hibernate
+     * @param name database name, the database lives as long as the JVM
+     * @return properties
+     */
+    public static Properties inMemory(String name) {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.connection.url",
+                "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        properties.setProperty("hibernate.connection.username", "sa");
+        properties.setProperty("hibernate.connection.password", "");
+        properties.setProperty("hibernate.hbm2ddl.auto", "validate");
+        properties.setProperty("hibernate.current_session_context_class", "thread");
+        return properties;
+    }
+}